@@ -0,0 +1,91 @@
+package de.unistuttgart.t2.uibackend;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import de.unistuttgart.t2.common.CartContent;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.cart.CartResource;
+import de.unistuttgart.t2.uibackend.inventory.ProductResource;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways to deserialize the products and carts the other services respond with. Reconfiguring a shared
+ * mapper for every response and going through a json tree, as the {@link UIBackendService} used to, against
+ * preconfigured readers of the {@link ProductResource} and the {@link CartResource}, with and without the code
+ * generated by Blackbird.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.includes=JsonReadersBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonReadersBenchmark {
+
+    private final String product = JSONs.inventoryResponse();
+    private final String cart = JSONs.cartResponseMulti();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ObjectReader productReader;
+    private ObjectReader cartReader;
+    private ObjectReader blackbirdProductReader;
+    private ObjectReader blackbirdCartReader;
+
+    @Setup
+    public void setUp() {
+        productReader = productReader(new ObjectMapper());
+        cartReader = cartReader(new ObjectMapper());
+
+        ObjectMapper blackbird = new ObjectMapper().registerModule(new BlackbirdModule());
+        blackbirdProductReader = productReader(blackbird);
+        blackbirdCartReader = cartReader(blackbird);
+    }
+
+    private static ObjectReader productReader(ObjectMapper mapper) {
+        return mapper.readerFor(ProductResource.class);
+    }
+
+    private static ObjectReader cartReader(ObjectMapper mapper) {
+        return mapper.readerFor(CartResource.class);
+    }
+
+    @Benchmark
+    public Product productWithSharedMapper() throws IOException {
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper.readValue(product, Product.class);
+    }
+
+    @Benchmark
+    public ProductResource productWithReader() throws IOException {
+        return productReader.readValue(product);
+    }
+
+    @Benchmark
+    public ProductResource productWithBlackbirdReader() throws IOException {
+        return blackbirdProductReader.readValue(product);
+    }
+
+    @Benchmark
+    public CartContent cartWithTree() throws IOException {
+        return mapper.treeToValue(mapper.readTree(cart).path("content"), CartContent.class);
+    }
+
+    @Benchmark
+    public CartResource cartWithReader() throws IOException {
+        return cartReader.readValue(cart);
+    }
+
+    @Benchmark
+    public CartResource cartWithBlackbirdReader() throws IOException {
+        return blackbirdCartReader.readValue(cart);
+    }
+}
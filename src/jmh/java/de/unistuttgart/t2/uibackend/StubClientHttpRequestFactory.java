@@ -0,0 +1,49 @@
+package de.unistuttgart.t2.uibackend;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers requests in process, with fixed json bodies by url, such that benchmarks measure the service rather than
+ * the network. Requests to unknown urls are answered with 404.
+ */
+public class StubClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private final Map<String, byte[]> bodies = new HashMap<>();
+
+    /**
+     * Answer requests to the given url with the given body.
+     *
+     * @param url  url of the request, including the query
+     * @param body json body of the response
+     * @return this factory
+     */
+    public StubClientHttpRequestFactory respond(String url, String body) {
+        bodies.put(url, body.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        byte[] body = bodies.get(uri.toString());
+
+        MockClientHttpResponse response = body == null
+            ? new MockClientHttpResponse(new byte[0], HttpStatus.NOT_FOUND)
+            : new MockClientHttpResponse(body, HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+        request.setResponse(response);
+        return request;
+    }
+}
@@ -0,0 +1,83 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.CartContent;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPage;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPageParser;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmarks of the hot paths of the {@link UIBackendService}, i.e. parsing the inventory's pages of products,
+ * deserializing products and cart contents and calculating totals.
+ * <p>
+ * The other services are stubbed in process by a {@link StubClientHttpRequestFactory}, thus the benchmarks measure
+ * the (de)serialization and bookkeeping of the service, but not the network. Run with
+ * {@code mvn -Pjmh test-compile exec:exec}, which also reports the allocations per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UIBackendServiceBenchmark {
+
+    private static final int PAGES = 10;
+
+    private UIBackendService service;
+    private InventoryPageParser parser;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        StubClientHttpRequestFactory stubs = new StubClientHttpRequestFactory()
+            .respond(JSONs.cartUrl + "/" + JSONs.sessionId, JSONs.cartResponseMulti())
+            .respond(JSONs.inventoryUrl + "/" + JSONs.productId, JSONs.inventoryResponse())
+            .respond(JSONs.inventoryUrl + "/" + JSONs.anotherproductId, JSONs.anotherInventoryResponse())
+            .respond(JSONs.inventoryUrl, JSONs.inventoryResponsePage(0, PAGES));
+        for (int i = 1; i < PAGES; i++) {
+            stubs.respond(JSONs.inventoryPageUrl(i, 1), JSONs.inventoryResponsePage(i, PAGES));
+        }
+
+        service = new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl,
+            JSONs.reservationEndpoint);
+        service.template = new RestTemplate(stubs);
+
+        parser = new InventoryPageParser();
+        page = JSONs.inventoryResponsePage(0, PAGES).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public InventoryPage parseInventoryPage() throws IOException {
+        return parser.parse(new ByteArrayInputStream(page));
+    }
+
+    @Benchmark
+    public List<Product> getAllProducts() {
+        return service.getAllProducts();
+    }
+
+    @Benchmark
+    public Optional<Product> getSingleProduct() {
+        return service.getSingleProduct(JSONs.productId);
+    }
+
+    @Benchmark
+    public Optional<CartContent> getCartContent() {
+        return service.getCartContent(JSONs.sessionId);
+    }
+
+    @Benchmark
+    public double getTotal() {
+        return service.getTotal(JSONs.sessionId);
+    }
+}
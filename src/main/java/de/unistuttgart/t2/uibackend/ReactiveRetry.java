@@ -0,0 +1,40 @@
+package de.unistuttgart.t2.uibackend;
+
+import io.github.resilience4j.retry.Retry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link Retry} to non-blocking calls, such that they are retried exactly like the blocking calls decorated
+ * with the same retry.
+ */
+final class ReactiveRetry {
+
+    private ReactiveRetry() {}
+
+    /**
+     * Decorate a non-blocking call with the given retry.
+     *
+     * @param retry the retry to apply
+     * @param call  places the call, invoked once per attempt
+     * @param <T>   type of the call's result
+     * @return the decorated call
+     */
+    static <T> Mono<T> decorate(Retry retry, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> attempt(retry.asyncContext(), call));
+    }
+
+    private static <T> Mono<T> attempt(Retry.AsyncContext<T> context, Supplier<Mono<T>> call) {
+        return Mono.defer(call)
+            .doOnSuccess(result -> context.onComplete())
+            .onErrorResume(e -> {
+                long delay = context.onError(e);
+                if (delay < 0) {
+                    return Mono.error(e);
+                }
+                return Mono.delay(Duration.ofMillis(delay)).then(Mono.defer(() -> attempt(context, call)));
+            });
+    }
+}
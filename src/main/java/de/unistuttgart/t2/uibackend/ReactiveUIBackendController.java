@@ -0,0 +1,172 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.OrderRequest;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.common.UpdateCartRequest;
+import de.unistuttgart.t2.uibackend.cache.ProductCatalogSnapshot;
+import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
+import de.unistuttgart.t2.uibackend.exceptions.OrderNotPlacedException;
+import de.unistuttgart.t2.uibackend.exceptions.ReservationFailedException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Defines the same http endpoints as {@link UIBackendController}, but serves them with the
+ * {@link ReactiveUIBackendService}, such that no thread waits for the responses of other services.
+ * <p>
+ * Replaces the {@link UIBackendController} if {@code t2.client.mode} is {@code reactive}.
+ */
+@RestController
+@ConditionalOnProperty(value = "t2.client.mode", havingValue = "reactive")
+public class ReactiveUIBackendController {
+
+    private final ReactiveUIBackendService service;
+
+    // optional, crawl the inventory for each request if absent
+    @Autowired(required = false)
+    ProductCatalogSnapshot catalogSnapshot;
+
+    public ReactiveUIBackendController(@Autowired ReactiveUIBackendService service) {
+        this.service = service;
+    }
+
+    /**
+     * Get all existing products in the inventory
+     * <p>
+     * If a {@link ProductCatalogSnapshot} is available, the products are taken from the snapshot.
+     *
+     * @return list of products
+     */
+    @Operation(summary = "List all available products", description = "Retrieve a list of all available products.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of products retrieved successfully", content = @Content(array = @ArraySchema(schema = @Schema(implementation = Product.class)))),
+    })
+    @GetMapping("/products")
+    public Mono<List<Product>> getAllProducts() {
+        return getProducts().collectList();
+    }
+
+    /**
+     * Get all existing products in the inventory as newline delimited json.
+     * <p>
+     * The products of each inventory page are written as soon as the page is retrieved, instead of waiting for all
+     * pages. If a {@link ProductCatalogSnapshot} is available, the products are taken from the snapshot.
+     *
+     * @return stream of products, one per line
+     */
+    @Operation(summary = "Stream all available products",
+        description = "Retrieve all available products as newline delimited json, written while they are retrieved.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products are streamed", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Product.class))),
+    })
+    @GetMapping(value = "/products", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Product> streamAllProducts() {
+        return getProducts();
+    }
+
+    private Flux<Product> getProducts() {
+        if (catalogSnapshot != null) {
+            // the snapshot blocks only until the very first crawl is done
+            return Mono.fromCallable(catalogSnapshot::getAllProducts).subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(products -> products);
+        }
+        return service.getAllProducts();
+    }
+
+    /**
+     * Get a specific product by its ID
+     *
+     * @param productId ID of the product
+     * @return product if ID exists
+     */
+    @Operation(summary = "Get product by ID", description = "Retrieve a product by its unique identifier.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Product retrieved successfully", content = @Content(schema = @Schema(implementation = Product.class))),
+            @ApiResponse(responseCode = "404", description = "Product not found", content = @Content(schema = @Schema(example = "{\"message\": \"Product with ID '123' not found\"}")))
+    })
+    @GetMapping("/products/{productId}")
+    public Mono<Product> getProduct(@PathVariable String productId) {
+        return service.getSingleProduct(productId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Product with ID '" + productId + "' not found")));
+    }
+
+    /**
+     * Update units of the given products to the cart.
+     * <p>
+     * Works as {@link UIBackendController#updateCart(String, UpdateCartRequest)}, except that the reservations are
+     * placed concurrently.
+     *
+     * @param sessionId         sessionId to identify the user's cart
+     * @param updateCartRequest request that contains the id of the products to be updated and the number of units to be
+     *                          added or deleted
+     * @return list of successfully added items
+     */
+    @Operation(summary = "Update items in cart")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(examples = @ExampleObject(value = "{\n\"content\": {\n    \"product-id\": 3\n  }\n}")))
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Cart updated") })
+    @PostMapping("/cart/{sessionId}")
+    public Mono<List<Product>> updateCart(@PathVariable String sessionId,
+                                          @RequestBody UpdateCartRequest updateCartRequest) {
+        return service.updateCart(sessionId, updateCartRequest.getContent());
+    }
+
+    /**
+     * Get a list of all products in the user's cart.
+     *
+     * @param sessionId the session id of the user
+     * @return a list of all products in the users cart
+     */
+    @Operation(summary = "List all items in cart")
+    @GetMapping("/cart/{sessionId}")
+    public Mono<List<Product>> getCart(@PathVariable String sessionId) {
+        return service.getProductsInCart(sessionId);
+    }
+
+    /**
+     * Place an order, i.e. start a transaction.<br>
+     * Upon successfully placing the order, the cart is cleared and the session gets invalidated.<br>
+     * If the user wants to place another order he needs a new http session.
+     *
+     * @param request request to place an Order
+     * @return completes once the order is placed, or signals an {@link OrderNotPlacedException}
+     */
+    @Operation(summary = "Order all items in the cart", description = "Order all items in the cart")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Order for items is placed"),
+        @ApiResponse(responseCode = "500", description = "Order could not be placed") })
+    @PostMapping("/confirm")
+    public Mono<Void> confirmOrder(@RequestBody OrderRequest request) {
+        return service.confirmOrder(request.getSessionId(), request.getCardNumber(), request.getCardOwner(),
+            request.getChecksum());
+    }
+
+    /**
+     * Creates the response entity if a request could not be served because a custom exception was thrown.
+     *
+     * @param exception the exception that was thrown
+     * @return a response entity with an exceptional message
+     */
+    @ExceptionHandler({ OrderNotPlacedException.class, ReservationFailedException.class,
+        CartInteractionFailedException.class })
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public ResponseEntity<String> handleCustomException(Exception exception) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
+    }
+}
@@ -0,0 +1,526 @@
+package de.unistuttgart.t2.uibackend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.t2.common.CartContent;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.common.ReservationRequest;
+import de.unistuttgart.t2.common.SagaRequest;
+import de.unistuttgart.t2.uibackend.cart.CartResource;
+import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
+import de.unistuttgart.t2.uibackend.exceptions.OrderNotPlacedException;
+import de.unistuttgart.t2.uibackend.exceptions.ReservationFailedException;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPage;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPageParser;
+import de.unistuttgart.t2.uibackend.inventory.ProductResource;
+import de.unistuttgart.t2.uibackend.retry.RetryPolicies;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Manages interaction with other services, without blocking a thread while waiting for their responses.
+ * <p>
+ * Does the same as {@link UIBackendService}, with the same retries and the same exceptions, except that exceptions are
+ * signalled through the returned publishers instead of being thrown. Requests that do not depend on each other are
+ * placed concurrently.
+ * <p>
+ * Like the blocking service, all changes of an update are applied to the cart with a single read and a single write,
+ * and changes of the same cart are applied one after another. Instead of holding a lock, each change of a cart
+ * subscribes once the previous change of that cart completed. Changes are never coalesced, neither are carts or
+ * products cached.
+ */
+public class ReactiveUIBackendService {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final InventoryPageParser pageParser;
+
+    private final WebClient client;
+
+    // last change of each cart, the next change of the cart waits for it
+    private final Map<String, Mono<Void>> cartChanges = new ConcurrentHashMap<>();
+
+    // URLs don't have a trailing slash
+    private final String orchestratorUrl;
+    private final String cartUrl;
+    private final String inventoryUrl;
+    private final String reservationEndpoint;
+
+    // simulate compute intensive task
+    private final String computationSimulatorUrl;
+    private final boolean simulateComputeIntensiveTask;
+
+    // max number of requests in flight for one call, e.g. products of one cart
+    private final int concurrency;
+
+    // retry stuff, same as for the blocking service
+    RetryConfig config = RetryConfig.custom().maxAttempts(2).build();
+    RetryRegistry registry = RetryRegistry.of(config);
+    Retry retry = registry.retry("uibackendReactiveRetry");
+
+    // optional, retry all requests the same way if absent
+    @Autowired(required = false)
+    RetryPolicies retryPolicies;
+
+    public ReactiveUIBackendService(WebClient client, ObjectMapper mapper, String cartUrl, String inventoryUrl,
+                                    String orchestratorUrl, String reservationEndpoint,
+                                    boolean simulateComputeIntensiveTask, String computationSimulatorUrl,
+                                    int concurrency) {
+        if (cartUrl == null || inventoryUrl == null || orchestratorUrl == null || reservationEndpoint == null) {
+            throw new IllegalArgumentException(
+                String.format("urls must not be 'null' but one of these is: %s, %s, %s, %s ", cartUrl, inventoryUrl,
+                    orchestratorUrl, reservationEndpoint));
+        }
+        if (simulateComputeIntensiveTask && computationSimulatorUrl == null) {
+            throw new IllegalArgumentException(
+                "url of computation simulator must not be 'null' if simulation is enabled!");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Value of concurrency must be positive.");
+        }
+        this.client = client;
+        this.pageParser = new InventoryPageParser(mapper.getFactory());
+        this.cartUrl = cartUrl;
+        this.inventoryUrl = inventoryUrl;
+        this.orchestratorUrl = orchestratorUrl;
+        this.reservationEndpoint = reservationEndpoint;
+        this.simulateComputeIntensiveTask = simulateComputeIntensiveTask;
+        this.computationSimulatorUrl = computationSimulatorUrl;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Get all products from the inventory, page by page.
+     * <p>
+     * The products of a page are emitted as soon as the page is retrieved, in page order. If a page cannot be
+     * retrieved, the following pages are not requested.
+     *
+     * @return all products in the inventory (might be incomplete)
+     */
+    public Flux<Product> getAllProducts() {
+        LOG.debug("get from " + inventoryUrl);
+
+        return getInventoryPage(inventoryUrl)
+            .expand(page -> page.next() == null ? Mono.empty() : getInventoryPage(page.next()))
+            .concatMapIterable(InventoryPage::products)
+            .onErrorResume(e -> {
+                LOG.error("Cannot retrieve all products", e);
+                return Flux.empty();
+            });
+    }
+
+    /**
+     * Get one page of products from the inventory.
+     * <p>
+     * The page is parsed straight from the received buffers, which are released once the page is parsed. The buffers
+     * are joined, but not copied.
+     *
+     * @param url url of the page
+     * @return the page, or an error if the page cannot be retrieved or is no page of products
+     */
+    private Mono<InventoryPage> getInventoryPage(String url) {
+        return ReactiveRetry.decorate(retryIdempotent(RetryPolicies.INVENTORY), () -> DataBufferUtils.join(
+                client.get().uri(URI.create(url))
+                    .accept(MediaType.APPLICATION_JSON, MediaType.ALL)
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)))
+            .<InventoryPage>handle((body, sink) -> {
+                try (InputStream in = body.asInputStream(true)) {
+                    sink.next(pageParser.parse(in));
+                } catch (IOException e) {
+                    sink.error(e);
+                }
+            });
+    }
+
+    /**
+     * Get the product with the given productId from the inventory.
+     * <p>
+     * If there is either no product with the given productId, or the retrieval of the product failed, the returned
+     * mono is empty.
+     *
+     * @param productId id of the product to be retrieved
+     * @return product with given id iff it exists
+     */
+    public Mono<Product> getSingleProduct(String productId) {
+        String resourceUrl = inventoryUrl + "/" + productId;
+        LOG.debug("get from " + resourceUrl);
+
+        return ReactiveRetry.decorate(retryIdempotent(RetryPolicies.INVENTORY), () -> client.get().uri(resourceUrl)
+                .retrieve()
+                .bodyToMono(ProductResource.class))
+            .map(product -> product.toProduct(productId))
+            .onErrorResume(WebClientResponseException.NotFound.class, e -> { // expected 404
+                LOG.debug("No product {} in inventory.", productId);
+                return Mono.empty();
+            })
+            .onErrorResume(e -> {
+                LOG.error("Cannot get product {}. Exception: {}", productId, e.getMessage(), e);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Get the content of the cart belonging to the given sessionId.
+     * <p>
+     * If there is either no cart content for the given sessionId, or the retrieval of the content failed, the returned
+     * mono is empty.
+     *
+     * @param sessionId the session id of the client whose cart content to retrieve
+     * @return content of cart iff it exists
+     */
+    public Mono<CartContent> getCartContent(String sessionId) {
+        return requestCartContent(sessionId)
+            .onErrorResume(WebClientResponseException.class, e -> {
+                LOG.error("Getting cart content for {} returned unexpected status code {}. Exception: {} ",
+                    sessionId, e.getStatusCode(), e.getMessage(), e);
+                return Mono.empty();
+            })
+            .onErrorResume(e -> {
+                LOG.error("Error getting cart content for {}. Exception: {} ", sessionId, e.getMessage(), e);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Get the content of the cart belonging to the given sessionId.
+     *
+     * @param sessionId the session id of the client whose cart content to retrieve
+     * @return content of cart, or empty iff there is no cart. signals any other failure.
+     */
+    private Mono<CartContent> requestCartContent(String sessionId) {
+        String resourceUrl = cartUrl + "/" + sessionId;
+        LOG.debug("get from " + resourceUrl);
+
+        return ReactiveRetry.decorate(retryIdempotent(RetryPolicies.CART), () -> client.get().uri(resourceUrl)
+                .retrieve()
+                .bodyToMono(CartResource.class))
+            .map(CartResource::toCartContent)
+            .onErrorResume(WebClientResponseException.NotFound.class, e -> { // expected 404
+                LOG.debug("Cart of {} is empty.", sessionId);
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Get a list of all products in a users cart.
+     * <p>
+     * The products are requested concurrently. Products that cannot be retrieved are skipped.
+     *
+     * @param sessionId identifies the cart content to get
+     * @return a list of the product in the cart, in the order of the cart
+     */
+    public Mono<List<Product>> getProductsInCart(String sessionId) {
+        return getCartContent(sessionId)
+            .flatMapMany(cart -> Flux.fromIterable(cart.getProductIds())
+                .flatMapSequential(productId -> getSingleProduct(productId)
+                    .doOnNext(product -> product.setUnits(cart.getUnits(productId))), concurrency))
+            .collectList();
+    }
+
+    /**
+     * Add the given number units of product to a users cart.
+     * <p>
+     * If the product is already in the cart, the units of that product will be updated.
+     *
+     * @param sessionId identifies the cart to add to
+     * @param productId id of product to be added
+     * @param units     number of units to be added (must not be negative)
+     * @return completes once the product is in the cart, or signals a {@link CartInteractionFailedException}
+     */
+    public Mono<Void> addItemToCart(String sessionId, String productId, int units) {
+        if (units < 0) {
+            return Mono.error(new IllegalArgumentException("Value of units must not be negative."));
+        }
+
+        return applyCartDelta(sessionId, Map.of(productId, units))
+            .onErrorMap(CartInteractionFailedException.class, e -> new CartInteractionFailedException(
+                String.format("Could not add %d units of product %s to cart.", units, productId)));
+    }
+
+    /**
+     * Delete the given number units of product from a users cart.
+     * <p>
+     * If the number of units in the cart decrease to zero or less, the product is remove from the cart. If the no such
+     * product is in cart, do nothing.
+     *
+     * @param sessionId identifies the cart to delete from
+     * @param productId id of the product to be deleted
+     * @param units     number of units to be deleted (must not be negative)
+     * @return completes once the product is deleted, or signals a {@link CartInteractionFailedException}
+     */
+    public Mono<Void> deleteItemFromCart(String sessionId, String productId, int units) {
+        if (units < 0) {
+            return Mono.error(new IllegalArgumentException("Value of units must not be negative."));
+        }
+
+        return applyCartDelta(sessionId, Map.of(productId, -units))
+            .onErrorMap(CartInteractionFailedException.class, e -> new CartInteractionFailedException(
+                String.format("Deletion for session %s failed : %s, %d", sessionId, productId, units)));
+    }
+
+    /**
+     * Apply the given changes of units to a users cart, with a single read and a single write of the cart.
+     * <p>
+     * Works as {@link UIBackendService#applyCartDelta(String, Map)} without coalescing: the change subscribes to the
+     * cart once the previous change of the same cart completed.
+     *
+     * @param sessionId identifies the cart to change
+     * @param delta     number of units to add (if positive) or to delete (if negative) by product id
+     * @return completes once the cart is changed, or signals a {@link CartInteractionFailedException}
+     */
+    public Mono<Void> applyCartDelta(String sessionId, Map<String, Integer> delta) {
+        if (delta.values().stream().allMatch(units -> units == 0)) {
+            return Mono.empty();
+        }
+        String resourceUrl = cartUrl + "/" + sessionId;
+
+        // only a missing cart counts as empty. anything else must not overwrite the cart.
+        return serializedPerCart(sessionId, requestCartContent(sessionId)
+            .map(cart -> new HashMap<>(cart.getContent()))
+            .onErrorMap(e -> {
+                LOG.error("Cannot read cart of {} to apply {}. Exception: {}", sessionId, delta, e.getMessage(), e);
+                return new CartInteractionFailedException(
+                    String.format("Update of cart for session %s failed : %s", sessionId, delta));
+            })
+            // no cart and nothing to add, nothing to do
+            .switchIfEmpty(Mono.defer(() -> delta.values().stream().anyMatch(units -> units > 0)
+                ? Mono.just(new HashMap<>()) : Mono.empty()))
+            .flatMap(content -> {
+                UIBackendService.applyDelta(content, delta);
+                LOG.debug("put to " + resourceUrl);
+                return ReactiveRetry.decorate(retryIdempotent(RetryPolicies.CART), () -> client.put().uri(resourceUrl)
+                        .bodyValue(new CartContent(content))
+                        .retrieve()
+                        .toBodilessEntity())
+                    .onErrorMap(e -> {
+                        LOG.error("Cannot apply {} to cart of {}. Exception: {}", delta, sessionId, e.getMessage(), e);
+                        return new CartInteractionFailedException(
+                            String.format("Update of cart for session %s failed : %s", sessionId, delta));
+                    });
+            })
+            .then());
+    }
+
+    /**
+     * Subscribe to the given change of a cart once the previous change of the same cart completed, successfully or
+     * not.
+     *
+     * @param sessionId identifies the cart
+     * @param change    the change of the cart
+     * @return the change, delayed until it is the cart's turn
+     */
+    private Mono<Void> serializedPerCart(String sessionId, Mono<Void> change) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> turn = done.asMono();
+            Mono<Void> previous = cartChanges.put(sessionId, turn);
+
+            return (previous == null ? Mono.<Void>empty() : previous)
+                .then(change)
+                .doFinally(signal -> {
+                    cartChanges.remove(sessionId, turn);
+                    done.tryEmitEmpty();
+                });
+        });
+    }
+
+    /**
+     * Update units of the given products in the cart.
+     * <p>
+     * Works as {@link UIBackendController#updateCart} with concurrent reservations: the
+     * reservations for all added products are placed concurrently, then all changes are applied to the cart with a
+     * single read and a single write. The cart is only updated for products whose reservation succeeded.
+     *
+     * @param sessionId identifies the cart to update
+     * @param content   units to add (if positive) or to delete (if negative) by product id
+     * @return the successfully added products, or a {@link CartInteractionFailedException} if the cart could not be
+     *         changed
+     */
+    public Mono<List<Product>> updateCart(String sessionId, Map<String, Integer> content) {
+        return Flux.fromIterable(content.entrySet())
+            .filter(entry -> entry.getValue() > 0)
+            .flatMapSequential(entry -> makeReservations(sessionId, entry.getKey(), entry.getValue())
+                .map(product -> {
+                    product.setUnits(entry.getValue());
+                    return Map.entry(entry.getKey(), product);
+                })
+                .onErrorResume(ReservationFailedException.class, e -> Mono.empty()), concurrency)
+            // contact inventory first, cause i'd rather have a dangling reservation than a
+            // products in the cart that are not backed with reservations.
+            .collectList()
+            .flatMap(reserved -> {
+                Map<String, Integer> delta = new LinkedHashMap<>();
+                content.forEach((productId, units) -> {
+                    if (units < 0) {
+                        delta.put(productId, units);
+                    }
+                });
+                reserved.forEach(entry -> delta.put(entry.getKey(), entry.getValue().getUnits()));
+
+                return applyCartDelta(sessionId, delta)
+                    .then(Mono.fromSupplier(() -> reserved.stream().map(Map.Entry::getValue).toList()));
+            });
+    }
+
+    /**
+     * Delete the entire cart for the given sessionId.
+     * <p>
+     * Failures are logged only.
+     *
+     * @param sessionId identifies the cart content to delete
+     * @return completes once the cart is deleted, or the deletion failed
+     */
+    public Mono<Void> deleteCart(String sessionId) {
+        String resourceUrl = cartUrl + "/" + sessionId;
+        LOG.debug("delete to " + resourceUrl);
+
+        return client.delete().uri(resourceUrl).retrieve().toBodilessEntity()
+            .onErrorResume(e -> {
+                LOG.error("Cannot delete cart.", e);
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /**
+     * Reserve a given number of units of the given product.
+     *
+     * @param sessionId identifies the session to reserve for
+     * @param productId identifies the product to reserve of
+     * @param units     number of units to reserve
+     * @return the product the reservation was made for, or a {@link ReservationFailedException}
+     */
+    public Mono<Product> makeReservations(String sessionId, String productId, int units) {
+        String resourceUrl = inventoryUrl + "/" + reservationEndpoint;
+        LOG.debug("post to " + resourceUrl);
+
+        ReservationRequest request = new ReservationRequest(productId, sessionId, units);
+
+        return ReactiveRetry.decorate(retryNonIdempotent(RetryPolicies.INVENTORY), () -> client.post().uri(resourceUrl)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(Product.class))
+            .onErrorMap(e -> {
+                LOG.error("Cannot reserve {} units of {} for {}. Exception: {}", units, productId, sessionId,
+                    e.getMessage(), e);
+                return new ReservationFailedException(
+                    String.format("Reservation for session %s failed : %s, %d", sessionId, productId, units));
+            });
+    }
+
+    /**
+     * Posts a request to start a transaction to the orchestrator. Attempts to delete the cart of the given sessionId
+     * once the orchestrator accepted the request. Nothing happens if the deletion of a cart fails, as the cart service
+     * supposed to periodically remove out dated cart entries anyway.
+     *
+     * @param sessionId  identifies the session
+     * @param cardNumber part of payment details
+     * @param cardOwner  part of payment details
+     * @param checksum   part of payment details
+     * @return completes once the order is placed, or signals an {@link OrderNotPlacedException}
+     */
+    public Mono<Void> confirmOrder(String sessionId, String cardNumber, String cardOwner, String checksum) {
+        return getTotal(sessionId).flatMap(total -> {
+            if (total <= 0) {
+                return Mono.error(new OrderNotPlacedException(String
+                    .format("No Order placed for session %s. Cart is either empty or not available. ", sessionId)));
+            }
+
+            SagaRequest request = new SagaRequest(sessionId, cardNumber, cardOwner, checksum, total);
+
+            return ReactiveRetry.decorate(retryNonIdempotent(RetryPolicies.ORCHESTRATOR),
+                    () -> client.post().uri(orchestratorUrl)
+                    .bodyValue(request)
+                    .retrieve()
+                    .toBodilessEntity())
+                .onErrorMap(e -> {
+                    LOG.error("Failed to contact orchestrator for session {}. Exception: {}", sessionId,
+                        e.getMessage(), e);
+                    return new OrderNotPlacedException(
+                        String.format("No Order placed for session %s. Orchestrator not available. ", sessionId));
+                })
+                .flatMap(response -> {
+                    LOG.info("orchestrator accepted request for session {} with status code {}.", sessionId,
+                        response.getStatusCode());
+                    return deleteCart(sessionId)
+                        .doOnSuccess(v -> LOG.info("deleted cart for session {}.", sessionId));
+                })
+                .then(simulateComputeIntensiveTask ? simulateComputeIntensiveTask(sessionId) : Mono.empty());
+        });
+    }
+
+    /**
+     * Calculates the total of a users cart.
+     * <p>
+     * The prices of all products in the cart are requested concurrently. If the cart or any product cannot be
+     * retrieved, the total is 0. This is because the store cannot handle partial orders.
+     *
+     * @param sessionId identifies the session to get total for
+     * @return the total money to pay for products in the cart
+     */
+    Mono<Double> getTotal(String sessionId) {
+        return getCartContent(sessionId)
+            .flatMap(cart -> Flux.fromIterable(cart.getProductIds())
+                .flatMap(this::getSingleProduct, concurrency)
+                .collectMap(Product::getId)
+                .map(products -> UIBackendService.calculateTotal(cart, products).map(BigDecimal::doubleValue)
+                    .orElse(0.0)))
+            .defaultIfEmpty(0.0);
+    }
+
+    private Retry retryIdempotent(String downstream) {
+        return retryPolicies == null ? retry : retryPolicies.idempotent(downstream);
+    }
+
+    private Retry retryNonIdempotent(String downstream) {
+        return retryPolicies == null ? retry : retryPolicies.nonIdempotent(downstream);
+    }
+
+    /**
+     * Calls the computation-simulator service to simulate a compute intensive scenario.
+     * <p>
+     * Completes once the computation is finished, without blocking a thread in the meantime.
+     */
+    private Mono<Void> simulateComputeIntensiveTask(String sessionId) {
+        return Mono.defer(() -> {
+            LOG.info("Start simulation of an intensive computation task ... Session: {}", sessionId);
+            // Returns the duration in milliseconds that the calculation took
+            Supplier<Mono<Double>> call = () -> client.post().uri(computationSimulatorUrl).bodyValue(sessionId)
+                .retrieve().bodyToMono(Double.class);
+            return retryPolicies == null ? call.get()
+                : ReactiveRetry.decorate(retryNonIdempotent(RetryPolicies.COMPUTATION_SIMULATOR), call);
+        })
+            .doOnNext(duration -> LOG.info(
+                "Finished simulation of an intensive computation task. Duration: {} ms, Session: {}", duration,
+                sessionId))
+            .onErrorResume(e -> {
+                LOG.error("Failed to contact computation-simulator for session {}. Exception: {}", sessionId,
+                    e.getMessage(), e);
+                return Mono.empty();
+            })
+            .then();
+    }
+}
@@ -1,14 +1,51 @@
 package de.unistuttgart.t2.uibackend;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.cache.CartCache;
+import de.unistuttgart.t2.uibackend.cache.ProductCache;
+import de.unistuttgart.t2.uibackend.cache.ProductCatalogSnapshot;
+import de.unistuttgart.t2.uibackend.concurrent.BackgroundTasks;
+import de.unistuttgart.t2.uibackend.concurrent.FanOut;
+import de.unistuttgart.t2.uibackend.concurrent.SingleFlight;
+import de.unistuttgart.t2.uibackend.concurrent.VirtualThreads;
+import de.unistuttgart.t2.uibackend.concurrent.VirtualThreadsCustomizer;
+import de.unistuttgart.t2.uibackend.http.CircuitBreakersHealthIndicator;
+import de.unistuttgart.t2.uibackend.http.ClientRequestMetrics;
+import de.unistuttgart.t2.uibackend.http.ConcurrencyLimitingInterceptor;
+import de.unistuttgart.t2.uibackend.http.DownstreamIsolationInterceptor;
+import de.unistuttgart.t2.uibackend.http.PooledClientHttpRequestFactory;
+import de.unistuttgart.t2.uibackend.retry.RetryBudget;
+import de.unistuttgart.t2.uibackend.retry.RetryPolicies;
+import de.unistuttgart.t2.uibackend.retry.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Interacts with other services to prepare data for the actual UI. (If did it right, this service is a API Gateway)
@@ -26,6 +63,14 @@ public class UIBackendApplication {
     private String inventoryUrl;
     @Value("${t2.inventory.reservationendpoint}")
     private String reservationEndpoint;
+    @Value("${t2.inventory.batch-search-endpoint:}")
+    private String batchSearchEndpoint;
+    @Value("${t2.inventory.crawl-window:1}")
+    private int crawlWindow;
+    @Value("${t2.cart.coalesce-updates:false}")
+    private boolean coalesceCartUpdates;
+    @Value("${t2.json.blackbird.enabled:false}")
+    private boolean blackbird;
     @Value("${t2.computation-simulator.enabled}")
     private boolean enableComputeIntensiveSimulation;
     @Value("${t2.computation-simulator.url}")
@@ -36,15 +81,215 @@ public class UIBackendApplication {
     }
 
     @Bean
-    public RestTemplate template() {
-        return new RestTemplate();
+    public RestTemplate template(ObjectProvider<PooledClientHttpRequestFactory> requestFactory,
+                                 ObjectProvider<ConcurrencyLimitingInterceptor> concurrencyLimit,
+                                 ObjectProvider<ClientRequestMetrics> metrics,
+                                 ObjectProvider<DownstreamIsolationInterceptor> isolation,
+                                 RetryBudget retryBudget) {
+        PooledClientHttpRequestFactory pooled = requestFactory.getIfAvailable();
+        RestTemplate template = pooled == null ? new RestTemplate() : new RestTemplate(pooled);
+        concurrencyLimit.ifAvailable(template.getInterceptors()::add);
+        // after the limit, such that waiting for a permit does not count as latency of the other service
+        metrics.ifAvailable(template.getInterceptors()::add);
+        isolation.ifAvailable(template.getInterceptors()::add);
+        // last, such that requests rejected by the limit or the isolation do not drain the budget
+        template.getInterceptors().add(retryBudget);
+        return template;
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.metrics.client.enabled", havingValue = "true", matchIfMissing = true)
+    public ClientRequestMetrics clientRequestMetrics(MeterRegistry registry) {
+        return new ClientRequestMetrics(registry, downstreamUrls());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.isolation.enabled", havingValue = "true", matchIfMissing = true)
+    public DownstreamIsolationInterceptor isolation(Environment environment) {
+        List<DownstreamIsolationInterceptor.Downstream> downstreams = new ArrayList<>();
+        downstreamUrls().forEach((name, url) -> {
+            DownstreamSettings settings = new DownstreamSettings(environment, "t2.isolation", name);
+            downstreams.add(new DownstreamIsolationInterceptor.Downstream(name, url,
+                settings.get("failure-rate-threshold", Float.class, 50f),
+                settings.get("slow-call-duration", Duration.class, Duration.ofSeconds(2)),
+                settings.get("slow-call-rate-threshold", Float.class, 50f),
+                settings.get("sliding-window-size", Integer.class, 20),
+                settings.get("minimum-calls", Integer.class, 10),
+                settings.get("wait-in-open-state", Duration.class, Duration.ofSeconds(10)),
+                settings.get("max-concurrent-calls", Integer.class, 50),
+                settings.get("max-wait", Duration.class, Duration.ofMillis(100))));
+        });
+        return new DownstreamIsolationInterceptor(downstreams);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.isolation.enabled", havingValue = "true", matchIfMissing = true)
+    public CircuitBreakersHealthIndicator circuitBreakersHealthIndicator(DownstreamIsolationInterceptor isolation) {
+        return new CircuitBreakersHealthIndicator(isolation.getCircuitBreakers());
+    }
+
+    @Bean
+    public RetryBudget retryBudget(@Value("${t2.retry.budget.max-tokens:100}") int maxTokens,
+                                   @Value("${t2.retry.budget.token-ratio:0.1}") double tokenRatio) {
+        return new RetryBudget(maxTokens, tokenRatio);
+    }
+
+    @Bean
+    public RetryPolicies retryPolicies(Environment environment, RetryBudget retryBudget) {
+        Map<String, RetryPolicy> policies = new LinkedHashMap<>();
+        policies.put(RetryPolicies.CART, retryPolicy(environment, RetryPolicies.CART, 2));
+        policies.put(RetryPolicies.INVENTORY, retryPolicy(environment, RetryPolicies.INVENTORY, 2));
+        policies.put(RetryPolicies.ORCHESTRATOR, retryPolicy(environment, RetryPolicies.ORCHESTRATOR, 2));
+        policies.put(RetryPolicies.COMPUTATION_SIMULATOR,
+            retryPolicy(environment, RetryPolicies.COMPUTATION_SIMULATOR, 1));
+        return new RetryPolicies(policies, retryBudget);
+    }
+
+    private static RetryPolicy retryPolicy(Environment environment, String downstream, int defaultMaxAttempts) {
+        DownstreamSettings settings = new DownstreamSettings(environment, "t2.retry", downstream);
+        String statuses = settings.get("retryable-statuses", String.class, "502,503,504");
+        return new RetryPolicy(
+            settings.get("max-attempts", Integer.class, defaultMaxAttempts),
+            settings.get("initial-backoff", Duration.class, Duration.ofMillis(100)),
+            settings.get("multiplier", Double.class, 2.0),
+            settings.get("max-backoff", Duration.class, Duration.ofSeconds(2)),
+            settings.get("jitter", Double.class, 0.5),
+            StringUtils.commaDelimitedListToSet(statuses).stream().map(String::trim).map(Integer::valueOf)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Settings of one of the other services. Each setting is taken from {@code {prefix}.{service}.{key}}, or else from
+     * {@code {prefix}.{key}}.
+     */
+    private record DownstreamSettings(Environment environment, String prefix, String downstream) {
+
+        <T> T get(String key, Class<T> type, T defaultValue) {
+            return environment.getProperty(prefix + "." + downstream + "." + key, type,
+                environment.getProperty(prefix + "." + key, type, defaultValue));
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.threads.virtual.enabled", havingValue = "true")
+    public VirtualThreadsCustomizer virtualThreadsCustomizer() {
+        return new VirtualThreadsCustomizer(VirtualThreads.newExecutor("uibackend-http-"));
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.threads.virtual.enabled", havingValue = "true")
+    public ConcurrencyLimitingInterceptor concurrencyLimit(
+        @Value("${t2.threads.virtual.max-concurrent-requests:200}") int maxConcurrentRequests,
+        @Value("${t2.http.acquire-timeout:1s}") Duration acquireTimeout) {
+        return new ConcurrencyLimitingInterceptor(maxConcurrentRequests, acquireTimeout);
     }
 
     @Bean
-    public UIBackendService service() {
-        return new UIBackendService(
+    @ConditionalOnProperty(value = "t2.http.pool.enabled", havingValue = "true", matchIfMissing = true)
+    public PooledClientHttpRequestFactory requestFactory(Environment environment,
+                                                         @Value("${t2.http.max-connections:200}") int maxConnections,
+                                                         @Value("${t2.http.keep-alive:30s}") Duration keepAlive,
+                                                         @Value("${t2.http.connect-timeout:2s}") Duration connectTimeout,
+                                                         @Value("${t2.http.read-timeout:10s}") Duration readTimeout,
+                                                         @Value("${t2.http.acquire-timeout:1s}") Duration acquireTimeout) {
+        List<PooledClientHttpRequestFactory.Downstream> downstreams = new ArrayList<>();
+        downstreamUrls().forEach((name, url) -> downstreams.add(new PooledClientHttpRequestFactory.Downstream(name, URI.create(url),
+            environment.getProperty("t2.http." + name + ".max-connections", Integer.class, 50),
+            environment.getProperty("t2.http." + name + ".read-timeout", Duration.class))));
+
+        return new PooledClientHttpRequestFactory(maxConnections, keepAlive, connectTimeout, readTimeout,
+            acquireTimeout, downstreams);
+    }
+
+    /**
+     * @return urls of the other services, by name of the service
+     */
+    private Map<String, String> downstreamUrls() {
+        Map<String, String> urls = new LinkedHashMap<>();
+        urls.put("cart", cartUrl);
+        urls.put("inventory", inventoryUrl);
+        urls.put("orchestrator", orchestratorUrl);
+        if (computationSimulatorUrl != null) {
+            urls.put("computation-simulator", computationSimulatorUrl);
+        }
+        return urls;
+    }
+
+    @Bean
+    public UIBackendService service(ObjectMapper mapper) {
+        // the context's mapper is shared with the controllers, thus the module goes on a copy
+        UIBackendService service = new UIBackendService(
             cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint,
-            enableComputeIntensiveSimulation, computationSimulatorUrl);
+            enableComputeIntensiveSimulation, computationSimulatorUrl,
+            blackbird ? mapper.copy().registerModule(new BlackbirdModule()) : mapper);
+        service.setBatchSearchEndpoint(batchSearchEndpoint);
+        service.setCrawlWindow(crawlWindow);
+        service.setCoalesceCartUpdates(coalesceCartUpdates);
+        return service;
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.client.mode", havingValue = "reactive")
+    public ReactiveUIBackendService reactiveService(WebClient.Builder builder,
+                                                    @Value("${t2.http.connect-timeout:2s}") Duration connectTimeout,
+                                                    @Value("${t2.http.read-timeout:10s}") Duration readTimeout,
+                                                    @Value("${t2.client.reactive.concurrency:16}") int concurrency,
+                                                    RetryBudget retryBudget, ObjectMapper mapper) {
+        HttpClient httpClient = HttpClient.create()
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(readTimeout);
+        builder.clientConnector(new ReactorClientHttpConnector(httpClient)).filter(retryBudget.asFilter());
+        return new ReactiveUIBackendService(builder.build(), mapper,
+            cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint, enableComputeIntensiveSimulation,
+            computationSimulatorUrl, concurrency);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.fan-out.enabled", havingValue = "true")
+    public FanOut fanOut(@Value("${t2.fan-out.parallelism:8}") int parallelism,
+                         @Value("${t2.fan-out.queue-capacity:64}") int queueCapacity,
+                         @Value("${t2.fan-out.deadline:2s}") Duration deadline,
+                         @Value("${t2.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return new FanOut(parallelism, queueCapacity, deadline,
+                VirtualThreads.newThreadFactory("uibackend-fan-out-"));
+        }
+        return new FanOut(parallelism, queueCapacity, deadline);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.confirmation.async.enabled", havingValue = "true")
+    public BackgroundTasks postConfirmationTasks(@Value("${t2.confirmation.async.concurrency:4}") int concurrency,
+                                                 @Value("${t2.confirmation.async.queue-capacity:100}") int queueCapacity) {
+        return new BackgroundTasks("post-confirmation", concurrency, queueCapacity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.cache.products.enabled", havingValue = "true")
+    public ProductCache productCache(@Value("${t2.cache.products.ttl:60s}") Duration ttl,
+                                     @Value("${t2.cache.products.negative-ttl:10s}") Duration negativeTtl,
+                                     @Value("${t2.cache.products.max-entries:10000}") long maxEntries) {
+        return new ProductCache(ttl, negativeTtl, maxEntries);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.products.single-flight.enabled", havingValue = "true")
+    public SingleFlight<String, Optional<Product>> productRequests() {
+        return new SingleFlight<>("products");
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.cache.carts.enabled", havingValue = "true")
+    public CartCache cartCache(@Value("${t2.cache.carts.ttl:5s}") Duration ttl,
+                               @Value("${t2.cache.carts.max-entries:10000}") long maxEntries) {
+        return new CartCache(ttl, maxEntries);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "t2.products.snapshot.enabled", havingValue = "true")
+    public ProductCatalogSnapshot catalogSnapshot(UIBackendService service,
+                                                  @Value("${t2.products.snapshot.refresh-interval:30s}") Duration refreshInterval) {
+        return new ProductCatalogSnapshot(service::requestAllProducts, refreshInterval);
     }
 
     @Bean
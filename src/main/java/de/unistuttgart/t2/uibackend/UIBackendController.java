@@ -1,11 +1,17 @@
 package de.unistuttgart.t2.uibackend;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import de.unistuttgart.t2.common.OrderRequest;
 import de.unistuttgart.t2.common.Product;
 import de.unistuttgart.t2.common.UpdateCartRequest;
+import de.unistuttgart.t2.uibackend.cache.ProductCatalogSnapshot;
 import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
 import de.unistuttgart.t2.uibackend.exceptions.OrderNotPlacedException;
 import de.unistuttgart.t2.uibackend.exceptions.ReservationFailedException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,31 +20,62 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Defines the http endpoints of the UIBackend.
+ * <p>
+ * Replaced by the {@link ReactiveUIBackendController} if {@code t2.client.mode} is {@code reactive}.
  *
  * @author maumau
  */
 @RestController
+@ConditionalOnProperty(value = "t2.client.mode", havingValue = "blocking", matchIfMissing = true)
 public class UIBackendController {
 
     private final UIBackendService service;
 
-    public UIBackendController(@Autowired UIBackendService service) {
+    // writes one product per line, regardless of whether the application's mapper indents
+    private final ObjectWriter productWriter;
+
+    // optional, crawl the inventory for each request if absent
+    @Autowired(required = false)
+    ProductCatalogSnapshot catalogSnapshot;
+
+    // reserve all added products at once, instead of one after another
+    @Value("${t2.cart.concurrent-reservations:false}")
+    boolean concurrentReservations;
+
+    // apply all changes of an update with a single write of the cart, instead of one write per product
+    @Value("${t2.cart.coalesce-updates:false}")
+    boolean coalesceCartUpdates;
+
+    public UIBackendController(@Autowired UIBackendService service, @Autowired ObjectMapper mapper) {
         this.service = service;
+        this.productWriter = mapper.writerFor(Product.class).without(SerializationFeature.INDENT_OUTPUT);
     }
 
     /**
      * Get all existing products in the inventory
+     * <p>
+     * If a {@link ProductCatalogSnapshot} is available, the products are taken from the snapshot.
      * 
      * @return list of products
      */
@@ -48,9 +85,53 @@ public class UIBackendController {
     })
     @GetMapping("/products")
     public List<Product> getAllProducts() {
+        if (catalogSnapshot != null) {
+            return catalogSnapshot.getAllProducts();
+        }
         return service.getAllProducts();
     }
 
+    /**
+     * Get all existing products in the inventory as newline delimited json.
+     * <p>
+     * The products of each inventory page are written as soon as the page is retrieved, instead of waiting for all
+     * pages. If a {@link ProductCatalogSnapshot} is available, the products are taken from the snapshot.
+     *
+     * @return stream of products, one per line
+     */
+    @Operation(summary = "Stream all available products",
+        description = "Retrieve all available products as newline delimited json, written while they are retrieved.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Products are streamed", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Product.class))),
+    })
+    @GetMapping(value = "/products", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        StreamingResponseBody body = out -> {
+            Consumer<List<Product>> writePage = products -> {
+                try {
+                    for (Product product : products) {
+                        out.write(productWriter.writeValueAsBytes(product));
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+
+            try {
+                if (catalogSnapshot != null) {
+                    writePage.accept(catalogSnapshot.getAllProducts());
+                } else {
+                    service.forEachProductPage(writePage);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Get a specific product by its ID
      * 
@@ -76,17 +157,30 @@ public class UIBackendController {
      * add the products to the cart if the requested number of unit is available. To achieve this, at first a
      * reservations are placed in the inventory and only after the reservations are succeeded be are the products added
      * to the cart.
+     * <p>
+     * By default, each product is reserved and written to the cart on its own. Products whose reservation or write
+     * fails are skipped and not part of the returned list.
+     * <p>
+     * With concurrent reservations or coalesced cart updates enabled, all changes are applied to the cart with a single
+     * read and a single write instead, see {@link #updateCartWithSingleWrite(String, UpdateCartRequest)}.
      *
      * @param sessionId         sessionId to identify the user's cart
      * @param updateCartRequest request that contains the id of the products to be updated and the number of units to be
      *                          added or deleted
      * @return list of successfully added items
+     * @throws CartInteractionFailedException if the cart could not be changed with a single write
      */
     @Operation(summary = "Update items in cart")
     @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(examples = @ExampleObject(value = "{\n\"content\": {\n    \"product-id\": 3\n  }\n}")))
-    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Cart updated") })
+    @ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Cart updated"),
+        @ApiResponse(responseCode = "500", description = "Cart could not be updated with a single write") })
     @PostMapping("/cart/{sessionId}")
-    public List<Product> updateCart(@PathVariable String sessionId, @RequestBody UpdateCartRequest updateCartRequest) {
+    public List<Product> updateCart(@PathVariable String sessionId, @RequestBody UpdateCartRequest updateCartRequest)
+        throws CartInteractionFailedException {
+        if (concurrentReservations || coalesceCartUpdates) {
+            return updateCartWithSingleWrite(sessionId, updateCartRequest);
+        }
+
         List<Product> successfullyAddedProducts = new ArrayList<>();
 
         for (Entry<String, Integer> product : updateCartRequest.getContent().entrySet()) {
@@ -99,10 +193,13 @@ public class UIBackendController {
                     // contact inventory first, cause i'd rather have a dangling reservation than a
                     // products in the cart that are not backed with reservations.
                     int unitsToAdd = product.getValue();
-                    Product addedProduct = service.makeReservations(sessionId, productId, unitsToAdd);
-                    addedProduct.setUnits(unitsToAdd);
-                    service.addItemToCart(sessionId, productId, unitsToAdd);
-                    successfullyAddedProducts.add(addedProduct);
+                    Optional<Product> addedProduct =
+                        Optional.ofNullable(service.makeReservations(sessionId, productId, unitsToAdd));
+                    if (addedProduct.isPresent()) {
+                        addedProduct.get().setUnits(unitsToAdd);
+                        service.addItemToCart(sessionId, productId, unitsToAdd);
+                        successfullyAddedProducts.add(addedProduct.get());
+                    }
 
                 } catch (ReservationFailedException | CartInteractionFailedException e) {}
             } else { // product.getValue() < 0
@@ -115,6 +212,54 @@ public class UIBackendController {
         return successfullyAddedProducts;
     }
 
+    /**
+     * Update units of the given products with a single read and a single write of the cart.
+     * <p>
+     * If the write fails, no product was added, and the request fails. The reservations that were placed for the
+     * added products stay in the inventory until they expire, as the inventory offers no way to release them.
+     * With concurrent reservations enabled, the reservations for all added products are placed at once.
+     *
+     * @param sessionId         sessionId to identify the user's cart
+     * @param updateCartRequest request that contains the id of the products to be updated and the number of units to be
+     *                          added or deleted
+     * @return list of successfully added items
+     * @throws CartInteractionFailedException if the cart could not be changed
+     */
+    private List<Product> updateCartWithSingleWrite(String sessionId, UpdateCartRequest updateCartRequest)
+        throws CartInteractionFailedException {
+        Map<String, Integer> unitsToAdd = new LinkedHashMap<>();
+        Map<String, Integer> delta = new LinkedHashMap<>();
+
+        for (Entry<String, Integer> product : updateCartRequest.getContent().entrySet()) {
+            if (product.getValue() > 0) {
+                unitsToAdd.put(product.getKey(), product.getValue());
+            } else if (product.getValue() < 0) {
+                delta.put(product.getKey(), product.getValue());
+            }
+        }
+
+        // contact inventory first, cause i'd rather have a dangling reservation than a
+        // products in the cart that are not backed with reservations.
+        Map<String, Product> reservedProducts = new LinkedHashMap<>();
+        if (concurrentReservations) {
+            reservedProducts.putAll(service.makeReservations(sessionId, unitsToAdd));
+        } else {
+            for (Entry<String, Integer> product : unitsToAdd.entrySet()) {
+                try {
+                    Optional.ofNullable(service.makeReservations(sessionId, product.getKey(), product.getValue()))
+                        .ifPresent(reservedProduct -> {
+                            reservedProduct.setUnits(product.getValue());
+                            reservedProducts.put(product.getKey(), reservedProduct);
+                        });
+                } catch (ReservationFailedException e) {}
+            }
+        }
+        reservedProducts.forEach((productId, product) -> delta.put(productId, product.getUnits()));
+
+        service.applyCartDelta(sessionId, delta);
+        return new ArrayList<>(reservedProducts.values());
+    }
+
     /**
      * Get a list of all products in the user's cart.
      *
@@ -157,4 +302,17 @@ public class UIBackendController {
     public ResponseEntity<String> handleCustomException(Exception exception) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
     }
+
+    /**
+     * Creates the response entity if a request could not be served because a request to another service was rejected
+     * by its bulkhead or circuit breaker.
+     *
+     * @param exception the exception that was thrown
+     * @return a response entity with an exceptional message
+     */
+    @ExceptionHandler({ BulkheadFullException.class, CallNotPermittedException.class })
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<String> handleRejectedException(Exception exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(exception.getMessage());
+    }
 }
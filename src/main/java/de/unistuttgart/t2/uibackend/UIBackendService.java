@@ -1,33 +1,61 @@
 package de.unistuttgart.t2.uibackend;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import de.unistuttgart.t2.common.CartContent;
 import de.unistuttgart.t2.common.Product;
 import de.unistuttgart.t2.common.ReservationRequest;
 import de.unistuttgart.t2.common.SagaRequest;
+import de.unistuttgart.t2.uibackend.cache.CartCache;
+import de.unistuttgart.t2.uibackend.cache.ProductCache;
+import de.unistuttgart.t2.uibackend.cart.CartResource;
+import de.unistuttgart.t2.uibackend.concurrent.BackgroundTasks;
+import de.unistuttgart.t2.uibackend.concurrent.Coalescer;
+import de.unistuttgart.t2.uibackend.concurrent.FanOut;
+import de.unistuttgart.t2.uibackend.concurrent.SingleFlight;
+import de.unistuttgart.t2.uibackend.concurrent.StripedLocks;
 import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
+import de.unistuttgart.t2.uibackend.exceptions.IncompleteCatalogException;
 import de.unistuttgart.t2.uibackend.exceptions.OrderNotPlacedException;
 import de.unistuttgart.t2.uibackend.exceptions.ReservationFailedException;
+import de.unistuttgart.t2.uibackend.http.ClientRequestMetrics;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPage;
+import de.unistuttgart.t2.uibackend.inventory.InventoryPageParser;
+import de.unistuttgart.t2.uibackend.inventory.ProductResource;
+import de.unistuttgart.t2.uibackend.retry.RetryPolicies;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import io.github.resilience4j.retry.RetryRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.HttpStatusCode;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Manages interaction with other services.
@@ -39,10 +67,32 @@ public class UIBackendService {
     @Autowired
     RestTemplate template;
 
+    // optional, look up products one after another if absent
+    @Autowired(required = false)
+    FanOut fanOut;
+
+    // optional, always ask the inventory if absent
+    @Autowired(required = false)
+    ProductCache productCache;
+
+    // optional, always ask the cart service if absent
+    @Autowired(required = false)
+    CartCache cartCache;
+
+    // optional, the work after confirming an order is done by the confirming thread if absent
+    @Autowired(required = false)
+    BackgroundTasks postConfirmationTasks;
+
+    // optional, every caller asks the inventory on its own if absent
+    @Autowired(required = false)
+    SingleFlight<String, Optional<Product>> productRequests;
+
     private final Logger LOG = LoggerFactory.getLogger(getClass());
 
-    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
-        false);
+    // immutable, thus safe to share between threads
+    private final ObjectReader productReader;
+    private final ObjectReader cartReader;
+    private final InventoryPageParser pageParser;
 
     // URLs don't have a trailing slash
     private String orchestratorUrl;
@@ -50,15 +100,32 @@ public class UIBackendService {
     private String inventoryUrl;
     private String reservationEndpoint;
 
+    // optional, relative to the inventory url. look up products one by one if absent or unavailable.
+    private String batchSearchEndpoint;
+    private final AtomicBoolean batchSearchAvailable = new AtomicBoolean(true);
+
+    // max number of inventory pages requested at once, if there is a fan out.
+    private int crawlWindow = 1;
+
+    // changes of the same cart must not overlap
+    private final StripedLocks cartLocks = new StripedLocks(64);
+
+    // optional, merges concurrent changes of the same cart. write each change on its own if absent.
+    private Coalescer<Map<String, Integer>> cartUpdates;
+
     // simulate compute intensive task
     private final String computationSimulatorUrl;
     private final boolean simulateComputeIntensiveTask;
 
-    // retry stuff
+    // retry stuff, used for all requests if there are no retry policies
     RetryConfig config = RetryConfig.custom().maxAttempts(2).build();
     RetryRegistry registry = RetryRegistry.of(config);
     Retry retry = registry.retry("uibackendRetry");
 
+    // optional, retry all requests the same way if absent
+    @Autowired(required = false)
+    RetryPolicies retryPolicies;
+
     private void initialize(String cartUrl, String inventoryUrl, String orchestratorUrl, String reservationEndpoint) {
         if (cartUrl == null || inventoryUrl == null || orchestratorUrl == null || reservationEndpoint == null) {
             throw new IllegalArgumentException(
@@ -72,16 +139,32 @@ public class UIBackendService {
     }
 
     public UIBackendService(String cartUrl, String inventoryUrl, String orchestratorUrl, String reservationEndpoint) {
-        initialize(cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint);
-
-        this.simulateComputeIntensiveTask = false;
-        this.computationSimulatorUrl = null;
+        this(cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint, false, null);
     }
 
     public UIBackendService(String cartUrl, String inventoryUrl, String orchestratorUrl, String reservationEndpoint,
                             boolean simulateComputeIntensiveTask, String computationSimulatorUrl) {
+        this(cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint, simulateComputeIntensiveTask,
+            computationSimulatorUrl, new ObjectMapper());
+    }
+
+    /**
+     * Create a new service that reads the responses of the other services with the given mapper, e.g. one with
+     * modules that speed up deserialization.
+     * <p>
+     * The readers are built once, from the given mapper. They read the {@link ProductResource} and the
+     * {@link CartResource}, which ignore unknown properties regardless of the mapper's configuration, because the
+     * other services may (did) return more fields than we need.
+     */
+    public UIBackendService(String cartUrl, String inventoryUrl, String orchestratorUrl, String reservationEndpoint,
+                            boolean simulateComputeIntensiveTask, String computationSimulatorUrl,
+                            ObjectMapper mapper) {
         initialize(cartUrl, inventoryUrl, orchestratorUrl, reservationEndpoint);
 
+        this.productReader = mapper.readerFor(ProductResource.class);
+        this.cartReader = mapper.readerFor(CartResource.class);
+        this.pageParser = new InventoryPageParser(mapper.getFactory());
+
         this.simulateComputeIntensiveTask = simulateComputeIntensiveTask;
         this.computationSimulatorUrl = computationSimulatorUrl;
 
@@ -95,87 +178,160 @@ public class UIBackendService {
         }
     }
 
+    /**
+     * Set the endpoint of the inventory that retrieves many products by their ids at once, e.g.
+     * {@code search/findByIdIn}. The ids are passed as query parameter {@code ids}.
+     * <p>
+     * If no endpoint is set, or the inventory does not know the endpoint, products are retrieved one by one.
+     *
+     * @param batchSearchEndpoint endpoint relative to the inventory url, or 'null' to disable batch search
+     */
+    public void setBatchSearchEndpoint(String batchSearchEndpoint) {
+        this.batchSearchEndpoint = batchSearchEndpoint == null || batchSearchEndpoint.isBlank() ? null
+            : batchSearchEndpoint;
+        this.batchSearchAvailable.set(true);
+    }
+
+    /**
+     * Set the max number of inventory pages that are requested at once, while getting all products.
+     * <p>
+     * With a window greater than one, and a {@link FanOut} available, the first page tells how many pages there are,
+     * and all other pages are requested concurrently, as many at a time as the window allows. Otherwise, the pages are
+     * requested one after another, following the links to the next page.
+     *
+     * @param crawlWindow max number of pages requested at once (must be positive)
+     */
+    public void setCrawlWindow(int crawlWindow) {
+        if (crawlWindow < 1) {
+            throw new IllegalArgumentException("Value of crawl window must be positive.");
+        }
+        this.crawlWindow = crawlWindow;
+    }
+
+    /**
+     * Enable or disable coalescing of concurrent changes of the same cart.
+     * <p>
+     * If enabled, all changes of a cart go through {@link #applyCartDelta(String, Map)}, and changes that arrive while
+     * the cart is being written are merged into the next write.
+     *
+     * @param coalesceCartUpdates whether to coalesce changes of the same cart
+     */
+    public void setCoalesceCartUpdates(boolean coalesceCartUpdates) {
+        this.cartUpdates = coalesceCartUpdates ? new Coalescer<>(this::writeCartDeltas) : null;
+    }
+
     /**
      * Get a list of all products from the inventory.
      * <p>
-     * TODO : the generated endpoints do things with pages. this gets the first twenty items only.
+     * Follows the inventory's pages until the last one, see {@link #forEachProductPage(Consumer)}. The catalog is
+     * taken from the product cache, if there is one. Incomplete catalogs are never cached.
+     * <p>
+     * If some pages cannot be retrieved, the products of the pages that were retrieved are returned, rather than none.
      *
-     * @return a list of all products in the inventory. (might be incomplete)
+     * @return a list of all products in the inventory, or only some of them if the inventory did not deliver all pages
      */
     public List<Product> getAllProducts() {
+        try {
+            if (productCache != null) {
+                return productCache.getCatalog(this::requestAllProducts);
+            }
+            return requestAllProducts();
+        } catch (IncompleteCatalogException e) {
+            return e.getProducts();
+        }
+    }
+
+    /**
+     * Get a list of all products from the inventory, without asking the cache.
+     *
+     * @return a list of all products in the inventory
+     * @throws IncompleteCatalogException if any page of products cannot be retrieved
+     */
+    List<Product> requestAllProducts() {
         List<Product> result = new ArrayList<>();
+        if (!forEachProductPage(result::addAll)) {
+            throw new IncompleteCatalogException(
+                String.format("Retrieved only %d products, some pages are missing.", result.size()), result);
+        }
+        return result;
+    }
 
+    /**
+     * Get all products from the inventory, page by page, without asking the cache.
+     * <p>
+     * Each page is handed to the given consumer as soon as it is retrieved, in page order. If a page cannot be
+     * retrieved, the following pages are not requested. Only if pages are requested concurrently, pages that cannot be
+     * retrieved (in time) are skipped.
+     *
+     * @param consumer receives the products of one page at a time
+     * @return true iff all pages were retrieved
+     */
+    public boolean forEachProductPage(Consumer<List<Product>> consumer) {
         LOG.debug("get from " + inventoryUrl);
 
         try {
+            InventoryPage page = getInventoryPage(inventoryUrl);
+            consumer.accept(page.products());
 
-            // first page
-            result.addAll(getSomeProducts(inventoryUrl));
-
-            // additional pages
-            ResponseEntity<String> response = Retry
-                .decorateSupplier(retry, () -> template.getForEntity(inventoryUrl, String.class)).get();
-
-            JsonNode root = mapper.readTree(response.getBody());
-
-            while (hasNext(root)) {
-                String url = getNext(root);
-                result.addAll(getSomeProducts(url));
-
-                root = mapper.readTree(
-                    Retry.decorateSupplier(retry, () -> template.getForEntity(url, String.class)).get().getBody());
+            if (fanOut != null && crawlWindow > 1 && page.totalPages() > 1) {
+                return forEachRemainingPage(page, consumer);
+            }
 
+            while (page.next() != null) {
+                page = getInventoryPage(page.next());
+                consumer.accept(page.products());
             }
+            return true;
 
-        } catch (RestClientException | JsonProcessingException e) {
+        } catch (RestClientException e) {
             LOG.error("Cannot retrieve all products", e);
+            return false;
         }
-        return result;
-    }
-
-    /**
-     * Check whether there is another page after this in the inventory
-     *
-     * @param root inventory page as json node
-     * @return true iff there is a next page
-     */
-    private boolean hasNext(JsonNode root) {
-        return !root.findPath("next").isEmpty();
     }
 
     /**
-     * Get the url to the next inventory page
+     * Get the products on all pages after the first one, by requesting the pages concurrently.
+     * <p>
+     * Pages that cannot be retrieved (in time) are skipped.
      *
-     * @param root json node that contains url too next page
-     * @return url to next page
+     * @param firstPage the first page, tells how many pages there are
+     * @param consumer  receives the products of one page at a time, in page order
+     * @return true iff all pages were retrieved
      */
-    private String getNext(JsonNode root) {
-        return root.findPath("next").findPath("href").asText();
-    }
-
-    private List<Product> getSomeProducts(String url) {
-        List<Product> result = new ArrayList<>();
-        ResponseEntity<String> response = Retry.decorateSupplier(retry, () -> template.getForEntity(url, String.class))
-            .get();
+    private boolean forEachRemainingPage(InventoryPage firstPage, Consumer<List<Product>> consumer) {
+        boolean complete = true;
+        for (int start = 1; start < firstPage.totalPages(); start += crawlWindow) {
+            List<String> urls = new ArrayList<>();
+            for (int number = start; number < Math.min(start + crawlWindow, firstPage.totalPages()); number++) {
+                urls.add(UriComponentsBuilder.fromHttpUrl(inventoryUrl).replaceQueryParam("page", number)
+                    .replaceQueryParam("size", firstPage.size()).toUriString());
+            }
 
-        try {
-            JsonNode root = mapper.readTree(response.getBody());
-            JsonNode inventory = root.findPath("inventory");
-
-            for (JsonNode node : inventory) {
-                try {
-                    Product p = mapper.treeToValue(node, Product.class);
-                    p.setId(getIdfromJson(node));
-                    result.add(p);
-                } catch (JsonProcessingException e) {
-                    LOG.error("Cannot deserialize a product received from {}. Exception: {}", url, e.getMessage(), e);
+            for (Optional<InventoryPage> page : fanOut.map(urls, url -> Optional.of(getInventoryPage(url)))) {
+                if (page.isPresent()) {
+                    consumer.accept(page.get().products());
+                } else {
+                    complete = false;
                 }
             }
-        } catch (JsonProcessingException e) {
-            LOG.error("Cannot deserialize some products received from {}. Exception: {}", url, e.getMessage(), e);
         }
+        return complete;
+    }
 
-        return result;
+    /**
+     * Get one page of products from the inventory.
+     * <p>
+     * The page is parsed while it is read from the response stream. The products, the link to the next page and the
+     * page metadata are all taken from the same pass.
+     *
+     * @param url url of the page
+     * @return the products on the page, the url of the next page and the page metadata
+     * @throws RestClientException if the page cannot be retrieved or is no page of products
+     */
+    private InventoryPage getInventoryPage(String url) {
+        return measured("getInventoryPage", Retry.decorateSupplier(retryIdempotent(RetryPolicies.INVENTORY),
+            () -> template.execute(url, HttpMethod.GET, UIBackendService::acceptJson,
+                response -> pageParser.parse(response.getBody()))));
     }
 
     /**
@@ -196,23 +352,137 @@ public class UIBackendService {
             throw new IllegalArgumentException("Value of units must not be negative.");
         }
 
-        Optional<CartContent> optCartContent = getCartContent(sessionId);
+        if (cartUpdates != null) {
+            applyCartDelta(sessionId, Map.of(productId, units));
+            return;
+        }
 
+        Lock lock = cartLocks.get(sessionId);
+        lock.lock();
         try {
+            Optional<CartContent> optCartContent = getCartContent(sessionId);
+
+            CartContent cartContent;
             if (optCartContent.isPresent()) {
-                CartContent cartContent = optCartContent.get();
+                cartContent = optCartContent.get();
                 cartContent.getContent().put(productId, units + cartContent.getUnits(productId));
-                template.put(resourceUrl, cartContent);
-
             } else {
-                template.put(resourceUrl, new CartContent(Map.of(productId, units)));
+                cartContent = new CartContent(Map.of(productId, units));
             }
-        } catch (RestClientException e) {
+            measured("addItemToCart", () -> template.put(resourceUrl, cartContent));
+            cacheCartContent(sessionId, cartContent);
+        } catch (RestClientException | UncheckedIOException e) {
+            invalidateCartContent(sessionId);
             throw new CartInteractionFailedException(
                 String.format("Could not add %d units of product %s to cart.", units, productId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply the given changes of units to a users cart, with a single read and a single write of the cart.
+     * <p>
+     * Positive numbers of units are added to the cart, negative ones are deleted from the cart. If the number of units
+     * of a product decrease to zero or less, the product is removed from the cart. If there is no cart and nothing to
+     * add, do nothing.
+     * <p>
+     * Changes of the same cart are applied one after another, such that no change gets lost. If coalescing is enabled,
+     * changes of the same cart that arrive while the cart is being written are applied together, with the next single
+     * read and write of the cart. All of them succeed or fail together.
+     *
+     * @param sessionId identifies the cart to change
+     * @param delta     number of units to add (if positive) or to delete (if negative) by product id
+     * @throws CartInteractionFailedException if anything went wrong while talking to the cart
+     */
+    public void applyCartDelta(String sessionId, Map<String, Integer> delta) throws CartInteractionFailedException {
+        if (delta.values().stream().allMatch(units -> units == 0)) {
+            return;
+        }
+
+        if (cartUpdates == null) {
+            writeCartDeltas(sessionId, List.of(delta));
+            return;
+        }
+
+        try {
+            cartUpdates.submit(sessionId, delta).join();
+        } catch (CompletionException e) {
+            // the batch's exception is shared by all its writes, thus each caller gets its own
+            if (e.getCause() instanceof CartInteractionFailedException cause) {
+                throw new CartInteractionFailedException(cause.getMessage(), cause);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new CartInteractionFailedException(
+                String.format("Update of cart for session %s failed : %s", sessionId, delta), e.getCause());
+        }
+    }
+
+    /**
+     * Apply the given changes of units to a users cart, one after another, with a single read and a single write of
+     * the cart.
+     *
+     * @param sessionId identifies the cart to change
+     * @param deltas    changes of units by product id, in the order they are applied
+     * @throws CartInteractionFailedException if anything went wrong while talking to the cart
+     */
+    private void writeCartDeltas(String sessionId, List<Map<String, Integer>> deltas)
+        throws CartInteractionFailedException {
+        String resourceUrl = cartUrl + "/" + sessionId;
+
+        Lock lock = cartLocks.get(sessionId);
+        lock.lock();
+        try {
+            // unlike getCartContent, only a missing cart counts as empty. anything else must not overwrite the cart.
+            Optional<CartContent> optCartContent = cartCache != null
+                ? cartCache.get(sessionId, this::requestCartContent)
+                : requestCartContent(sessionId);
+            if (optCartContent.isEmpty()
+                && deltas.stream().flatMap(delta -> delta.values().stream()).noneMatch(units -> units > 0)) {
+                return;
+            }
+
+            Map<String, Integer> content = new HashMap<>();
+            optCartContent.ifPresent(cartContent -> content.putAll(cartContent.getContent()));
+            deltas.forEach(delta -> applyDelta(content, delta));
+
+            LOG.debug("put to " + resourceUrl);
+            CartContent cartContent = new CartContent(content);
+            measured("applyCartDelta", Retry.decorateRunnable(retryIdempotent(RetryPolicies.CART),
+                () -> template.put(resourceUrl, cartContent)));
+            cacheCartContent(sessionId, cartContent);
+        } catch (RestClientException e) {
+            invalidateCartContent(sessionId);
+            LOG.error("Cannot apply {} to cart of {}. Exception: {}", deltas, sessionId, e.getMessage(), e);
+            throw new CartInteractionFailedException(
+                String.format("Update of cart for session %s failed : %s", sessionId, deltas));
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Apply the given changes of units to the given cart content.
+     *
+     * @param content units by product id, changed in place
+     * @param delta   number of units to add (if positive) or to delete (if negative) by product id
+     */
+    static void applyDelta(Map<String, Integer> content, Map<String, Integer> delta) {
+        delta.forEach((productId, units) -> {
+            int remainingUnits = content.getOrDefault(productId, 0) + units;
+            if (remainingUnits > 0) {
+                content.put(productId, remainingUnits);
+            } else {
+                content.remove(productId);
+            }
+        });
+    }
+
     /**
      * Delete the given number units of product from a users cart.
      * <p>
@@ -233,10 +503,17 @@ public class UIBackendService {
             throw new IllegalArgumentException("Value of units must not be negative.");
         }
 
-        Optional<CartContent> optCartContent = getCartContent(sessionId);
+        if (cartUpdates != null) {
+            applyCartDelta(sessionId, Map.of(productId, -units));
+            return;
+        }
 
-        if (optCartContent.isPresent()) {
-            try {
+        Lock lock = cartLocks.get(sessionId);
+        lock.lock();
+        try {
+            Optional<CartContent> optCartContent = getCartContent(sessionId);
+
+            if (optCartContent.isPresent()) {
                 CartContent cartContent = optCartContent.get();
                 int remainingUnitsInCart = cartContent.getUnits(productId) - units;
                 if (remainingUnitsInCart > 0) {
@@ -244,12 +521,17 @@ public class UIBackendService {
                 } else {
                     cartContent.getContent().remove(productId);
                 }
-                Retry.decorateRunnable(retry, () -> template.put(resourceUrl, cartContent)).run();
-            } catch (RestClientException e) {
-                LOG.error("Cannot delete {} unit(s) of {} for {}. Exception: {}", units, productId, sessionId, e.getMessage(), e);
-                throw new CartInteractionFailedException(
-                    String.format("Deletion for session %s failed : %s, %d", sessionId, productId, units));
+                measured("deleteItemFromCart", Retry.decorateRunnable(retryIdempotent(RetryPolicies.CART),
+                    () -> template.put(resourceUrl, cartContent)));
+                cacheCartContent(sessionId, cartContent);
             }
+        } catch (RestClientException e) {
+            invalidateCartContent(sessionId);
+            LOG.error("Cannot delete {} unit(s) of {} for {}. Exception: {}", units, productId, sessionId, e.getMessage(), e);
+            throw new CartInteractionFailedException(
+                String.format("Deletion for session %s failed : %s, %d", sessionId, productId, units));
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -264,14 +546,42 @@ public class UIBackendService {
         LOG.debug("delete to " + resourceUrl);
 
         try {
-            template.delete(resourceUrl);
+            measured("deleteCart", () -> template.delete(resourceUrl));
         } catch (RestClientException e) {
             LOG.error("Cannot delete cart.", e);
+        } finally {
+            invalidateCartContent(sessionId);
+        }
+    }
+
+    /**
+     * Put the given content of a cart into the {@link CartCache}, if available.
+     *
+     * @param sessionId identifies the cart
+     * @param content   content as written to the cart service
+     */
+    private void cacheCartContent(String sessionId, CartContent content) {
+        if (cartCache != null) {
+            cartCache.put(sessionId, content);
+        }
+    }
+
+    /**
+     * Remove the content of a cart from the {@link CartCache}, if available.
+     *
+     * @param sessionId identifies the cart
+     */
+    private void invalidateCartContent(String sessionId) {
+        if (cartCache != null) {
+            cartCache.invalidate(sessionId);
         }
     }
 
     /**
      * Get a list of all products in a users cart.
+     * <p>
+     * The products are retrieved as described in {@link #getProducts(Collection)}. Products that cannot be retrieved
+     * (in time) are skipped.
      *
      * @param sessionId identifies the cart content to get
      * @return a list of the product in the cart
@@ -283,20 +593,169 @@ public class UIBackendService {
 
         if (optCartContent.isPresent()) {
             CartContent cartContent = optCartContent.get();
+            Map<String, Product> products = getProducts(cartContent.getProductIds());
 
-            for (String productId : cartContent.getProductIds()) {
-                getSingleProduct(productId).ifPresent(p -> {
-                    p.setUnits(cartContent.getUnits(productId));
-                    results.add(p);
-                });
+            for (Product product : products.values()) {
+                product.setUnits(cartContent.getUnits(product.getId()));
+                results.add(product);
             }
         }
 
         return results;
     }
 
+    /**
+     * Get the products with the given productIds from the inventory, one request per product.
+     * <p>
+     * Requests are placed concurrently if a {@link FanOut} is available, and sequentially otherwise.
+     *
+     * @param productIds ids of the products to be retrieved
+     * @return one optional product per id, in the same order as the ids
+     */
+    private List<Optional<Product>> getSingleProducts(List<String> productIds) {
+        if (fanOut != null) {
+            return fanOut.map(productIds, this::getSingleProduct);
+        }
+        List<Optional<Product>> products = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            products.add(getSingleProduct(productId));
+        }
+        return products;
+    }
+
+    /**
+     * Get the products with the given productIds from the inventory.
+     * <p>
+     * Cached products are taken from the {@link ProductCache}, if available. If a batch search endpoint is set, all
+     * other products are requested with a single request. Products that the batch
+     * search did not deliver are requested one by one. The same happens for all products if the inventory does not
+     * offer the batch search. If there is either no product for an id, or its retrieval failed, there is no entry for
+     * that id.
+     *
+     * @param productIds ids of the products to be retrieved
+     * @return the retrieved products by their ids, in the same order as the ids
+     */
+    public Map<String, Product> getProducts(Collection<String> productIds) {
+        Map<String, Product> results = new LinkedHashMap<>();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(productIds));
+
+        if (distinctIds.isEmpty()) {
+            return results;
+        }
+
+        Map<String, Product> found = new HashMap<>();
+        List<String> unknownIds = distinctIds;
+
+        if (productCache != null) {
+            Map<String, Optional<Product>> cached = productCache.getAllPresent(distinctIds);
+            cached.forEach((productId, product) -> product.ifPresent(p -> found.put(productId, p)));
+            unknownIds = distinctIds.stream().filter(id -> !cached.containsKey(id)).toList();
+        }
+
+        found.putAll(searchProducts(unknownIds));
+        List<String> missingIds = unknownIds.stream().filter(id -> !found.containsKey(id)).toList();
+
+        if (!missingIds.isEmpty()) {
+            List<Optional<Product>> products = getSingleProducts(missingIds);
+            for (int i = 0; i < missingIds.size(); i++) {
+                String productId = missingIds.get(i);
+                products.get(i).ifPresent(p -> found.put(productId, p));
+            }
+        }
+
+        for (String productId : distinctIds) {
+            if (found.containsKey(productId)) {
+                results.put(productId, found.get(productId));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the products with the given productIds from the inventory's batch search endpoint.
+     * <p>
+     * If the inventory replies that it does not know the endpoint, batch search is not attempted again.
+     *
+     * @param productIds ids of the products to be retrieved
+     * @return the retrieved products by their ids, empty if batch search is disabled, unavailable or failed
+     */
+    private Map<String, Product> searchProducts(List<String> productIds) {
+        Map<String, Product> results = new HashMap<>();
+
+        if (batchSearchEndpoint == null || productIds.size() < 2 || !batchSearchAvailable.get()) {
+            return results;
+        }
+
+        String resourceUrl = UriComponentsBuilder.fromHttpUrl(inventoryUrl + "/" + batchSearchEndpoint)
+            .queryParam("ids", productIds.toArray()).toUriString();
+        LOG.debug("get from " + resourceUrl);
+
+        try {
+            InventoryPage page = measured("searchProducts", Retry
+                .decorateSupplier(retryIdempotent(RetryPolicies.INVENTORY),
+                    () -> template.execute(resourceUrl, HttpMethod.GET, UIBackendService::acceptJson,
+                        response -> pageParser.parse(response.getBody()))));
+
+            for (Product product : page.products()) {
+                results.put(product.getId(), product);
+                if (productCache != null) {
+                    productCache.put(product);
+                }
+            }
+        } catch (HttpClientErrorException.NotFound e) {
+            LOG.warn("Inventory offers no batch search at {}, retrieving products one by one from now on.",
+                resourceUrl);
+            batchSearchAvailable.set(false);
+        } catch (RestClientException e) {
+            LOG.error("Cannot search products {}. Exception: {}", productIds, e.getMessage(), e);
+        }
+        return results;
+    }
+
+    /**
+     * Reserve the given numbers of units of products.
+     * <p>
+     * The reservations are placed concurrently if a {@link FanOut} is available, and sequentially otherwise.
+     * Reservations that fail are skipped. As reservations are not idempotent, they are never abandoned: each one is
+     * waited for until the inventory answered, regardless of the fan out's deadline.
+     *
+     * @param sessionId identifies the session to reserve for
+     * @param units     number of units to reserve by product id
+     * @return the products with successful reservations by their ids, with the number of reserved units, in the order
+     *         of the given map
+     */
+    public Map<String, Product> makeReservations(String sessionId, Map<String, Integer> units) {
+        List<String> productIds = new ArrayList<>(units.keySet());
+
+        Function<String, Optional<Product>> reserve = productId -> {
+            try {
+                return Optional.ofNullable(makeReservations(sessionId, productId, units.get(productId)));
+            } catch (ReservationFailedException e) {
+                return Optional.empty();
+            }
+        };
+        List<Optional<Product>> reservations;
+        if (fanOut != null) {
+            reservations = fanOut.mapToCompletion(productIds, reserve);
+        } else {
+            reservations = productIds.stream().map(reserve).toList();
+        }
+
+        Map<String, Product> reserved = new LinkedHashMap<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            String productId = productIds.get(i);
+            reservations.get(i).ifPresent(product -> {
+                product.setUnits(units.get(productId));
+                reserved.put(productId, product);
+            });
+        }
+        return reserved;
+    }
+
     /**
      * Reserve a given number of units of the given product.
+     * <p>
+     * Always asks the inventory, never the {@link ProductCache}.
      *
      * @param sessionId identifies the session to reserve for
      * @param productId identifies the product to reserve of
@@ -313,8 +772,14 @@ public class UIBackendService {
         try {
             ReservationRequest request = new ReservationRequest(productId, sessionId, units);
 
-            ResponseEntity<Product> inventoryResponse = Retry
-                .decorateSupplier(retry, () -> template.postForEntity(resourceUrl, request, Product.class)).get();
+            ResponseEntity<Product> inventoryResponse = measured("makeReservations", Retry
+                .decorateSupplier(retryNonIdempotent(RetryPolicies.INVENTORY),
+                    () -> template.postForEntity(resourceUrl, request, Product.class)));
+
+            // the reservation changed the units in stock.
+            if (productCache != null) {
+                productCache.invalidate(productId);
+            }
 
             return inventoryResponse.getBody();
         } catch (RestClientException e) {
@@ -328,6 +793,9 @@ public class UIBackendService {
      * Posts a request to start a transaction to the orchestrator. Attempts to delete the cart of the given sessionId
      * once the orchestrator accepted the request. Nothing happens if the deletion of a cart fails, as the cart service
      * supposed to periodically remove out dated cart entries anyway.
+     * <p>
+     * If there are post confirmation tasks, deleting the cart and simulating the computation happen in the background,
+     * and this method returns as soon as the orchestrator accepted the request.
      *
      * @param sessionId  identifies the session
      * @param cardNumber part of payment details
@@ -347,25 +815,58 @@ public class UIBackendService {
         SagaRequest request = new SagaRequest(sessionId, cardNumber, cardOwner, checksum, total);
 
         try {
-            ResponseEntity<Void> response = Retry
-                .decorateSupplier(retry, () -> template.postForEntity(orchestratorUrl, request, Void.class)).get();
+            ResponseEntity<Void> response = measured("confirmOrder", Retry
+                .decorateSupplier(retryNonIdempotent(RetryPolicies.ORCHESTRATOR),
+                    () -> template.postForEntity(orchestratorUrl, request, Void.class)));
 
             LOG.info("orchestrator accepted request for session {} with status code {}.", sessionId,
                 response.getStatusCode());
-
-            deleteCart(sessionId);
-            LOG.info("deleted cart for session {}.", sessionId);
-
         } catch (RestClientException e) {
             LOG.error("Failed to contact orchestrator for session {}. Exception: {}", sessionId, e.getMessage(), e);
             throw new OrderNotPlacedException(
                 String.format("No Order placed for session %s. Orchestrator not available. ", sessionId));
-        } catch (CartInteractionFailedException e) {
-            LOG.error("Failed to delete cart for session {}. Exception: {}", sessionId, e.getMessage(), e);
         }
 
+        afterConfirmation("delete-cart", () -> deleteCartAfterConfirmation(sessionId));
+
         if (simulateComputeIntensiveTask) {
-            simulateComputeIntensiveTask(sessionId);
+            afterConfirmation("simulate-computation", () -> simulateComputeIntensiveTask(sessionId));
+        }
+    }
+
+    /**
+     * Run a task that has to happen after an order was confirmed, but that the confirmation does not depend on.
+     * <p>
+     * If there are post confirmation tasks, the task runs in the background. Otherwise it runs right away.
+     * <p>
+     * Either way, the task must not fail the confirmation, as the order is already placed. Thus all exceptions are
+     * logged and otherwise ignored, including those that are unchecked, e.g. rejections by a bulkhead or an open
+     * circuit breaker. Failing here would make clients retry, i.e. order twice.
+     *
+     * @param task what the task does
+     * @param run  the task
+     */
+    private void afterConfirmation(String task, Runnable run) {
+        Runnable guarded = () -> {
+            try {
+                run.run();
+            } catch (RuntimeException e) {
+                LOG.error("Task {} after confirmation failed. Exception: {}", task, e.getMessage(), e);
+            }
+        };
+        if (postConfirmationTasks != null) {
+            postConfirmationTasks.submit(task, guarded);
+        } else {
+            guarded.run();
+        }
+    }
+
+    private void deleteCartAfterConfirmation(String sessionId) {
+        try {
+            deleteCart(sessionId);
+            LOG.info("deleted cart for session {}.", sessionId);
+        } catch (CartInteractionFailedException e) {
+            LOG.error("Failed to delete cart for session {}. Exception: {}", sessionId, e.getMessage(), e);
         }
     }
 
@@ -374,83 +875,188 @@ public class UIBackendService {
      * <p>
      * If there is either no cart content for the given sessionId, or the retrieval of the content failed, an empty
      * optional is returned.
+     * <p>
+     * If a {@link CartCache} is available, the content is taken from the cache.
      *
      * @param sessionId the session id of the client whose cart content to retrieve
      * @return content of cart iff it exists
      */
     protected Optional<CartContent> getCartContent(String sessionId) {
-        String resourceUrl = cartUrl + "/" + sessionId;
-        LOG.debug("get from " + resourceUrl);
-
         try {
-            ResponseEntity<String> response = Retry
-                .decorateFunction(retry, (String url) -> template.getForEntity(url, String.class))
-                .apply(resourceUrl);
-
-            JsonNode root = mapper.readTree(response.getBody());
-            JsonNode name = root.path("content");
-
-            return Optional.of(mapper.treeToValue(name, CartContent.class));
-        } catch (HttpStatusCodeException e) { // expected 404
-            HttpStatusCode statusCode = e.getStatusCode();
-            if (statusCode == HttpStatus.NOT_FOUND) {
-                LOG.debug("Cart of {} is empty.", sessionId);
-            } else {
-                LOG.error("Getting cart content for {} returned unexpected status code {}. Exception: {} ",
-                    sessionId, statusCode, e.getMessage(), e);
+            if (cartCache != null) {
+                return cartCache.get(sessionId, this::requestCartContent);
             }
+            return requestCartContent(sessionId);
+        } catch (HttpStatusCodeException e) { // unexpected status code, 404 means empty cart
+            LOG.error("Getting cart content for {} returned unexpected status code {}. Exception: {} ",
+                sessionId, e.getStatusCode(), e.getMessage(), e);
         } catch (RestClientException e) { // unexpected exception
             LOG.error("Error getting cart content for {}. Exception: {} ", sessionId, e.getMessage(), e);
-        } catch (JsonProcessingException e) { // whatever we received, it was no cart content.
+        } catch (UncheckedIOException e) { // whatever we received, it was no cart content.
             LOG.error("Cannot deserialize cart content. Exception: {}", e.getMessage(), e);
         }
         return Optional.empty();
     }
 
+    /**
+     * Get the content of the cart belonging to the given sessionId from the cart service, without asking the cache.
+     *
+     * @param sessionId the session id of the client whose cart content to retrieve
+     * @return content of cart, or an empty optional iff there is no cart
+     * @throws RestClientException  if the retrieval failed
+     * @throws UncheckedIOException if the cart service's response was no cart content
+     */
+    private Optional<CartContent> requestCartContent(String sessionId) {
+        String resourceUrl = cartUrl + "/" + sessionId;
+        LOG.debug("get from " + resourceUrl);
+
+        try {
+            CartResource cart = measured("getCartContent", () -> Retry
+                .decorateFunction(retryIdempotent(RetryPolicies.CART),
+                    (String url) -> this.<CartResource>getResource(url, cartReader))
+                .apply(resourceUrl));
+
+            return Optional.of(cart.toCartContent());
+        } catch (HttpClientErrorException.NotFound e) { // expected 404
+            LOG.debug("Cart of {} is empty.", sessionId);
+        }
+        return Optional.empty();
+    }
+
     /**
      * Get the product with the given productId from the inventory.
      * <p>
      * If there is either no product with the given sessionId, or the retrieval of the product failed, an empty optional
      * is returned.
+     * <p>
+     * If a {@link ProductCache} is available, the product is taken from the cache. The cached number of units may be
+     * outdated.
      *
      * @param productId id of the product to be retrieved
      * @return product with given id iff it exists
      */
     protected Optional<Product> getSingleProduct(String productId) {
+        try {
+            if (productCache != null) {
+                return productCache.get(productId, this::fetchSingleProduct);
+            }
+            return fetchSingleProduct(productId);
+        } catch (RestClientException | UncheckedIOException e) {
+            LOG.error("Cannot get product {}. Exception: {}", productId, e.getMessage(), e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Get the product with the given productId from the inventory, without asking the cache.
+     * <p>
+     * If a request for the same product is in flight already, wait for that request instead of making another one.
+     *
+     * @param productId id of the product to be retrieved
+     * @return product with given id, or an empty optional iff the inventory has no such product
+     * @throws RestClientException  if the retrieval failed
+     * @throws UncheckedIOException if the inventory's response was no product
+     */
+    private Optional<Product> fetchSingleProduct(String productId) {
+        if (productRequests == null) {
+            return requestSingleProduct(productId);
+        }
+        // all callers of a collapsed request get the same product, thus each of them needs its own copy
+        return productRequests.execute(productId, () -> requestSingleProduct(productId))
+            .map(product -> new Product(product.getId(), product.getName(), product.getDescription(),
+                product.getUnits(), product.getPrice()));
+    }
+
+    /**
+     * Get the product with the given productId from the inventory, without asking the cache.
+     *
+     * @param productId id of the product to be retrieved
+     * @return product with given id, or an empty optional iff the inventory has no such product
+     * @throws RestClientException  if the retrieval failed
+     * @throws UncheckedIOException if the inventory's response was no product
+     */
+    private Optional<Product> requestSingleProduct(String productId) {
         String resourceUrl = inventoryUrl + "/" + productId;
         LOG.debug("get from " + resourceUrl);
 
         try {
-            ResponseEntity<String> response = Retry
-                .decorateFunction(retry, (String url) -> template.getForEntity(url, String.class))
-                .apply(resourceUrl);
+            ProductResource product = measured("getSingleProduct", () -> Retry
+                .decorateFunction(retryIdempotent(RetryPolicies.INVENTORY),
+                    (String url) -> this.<ProductResource>getResource(url, productReader))
+                .apply(resourceUrl));
+
+            return Optional.of(product.toProduct(productId));
+        } catch (HttpClientErrorException.NotFound e) { // expected 404
+            LOG.debug("No product {} in inventory.", productId);
+        }
+        return Optional.empty();
+    }
 
-            // important, because inventory api may (did) return more fields than we need.
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    /**
+     * Get a resource from another service. The resource is read straight from the response stream, without copying
+     * the body into a string or a json tree first.
+     *
+     * @param url    url of the resource
+     * @param reader reads the resource
+     * @return the resource
+     * @throws RestClientException  if the retrieval failed
+     * @throws UncheckedIOException if the response was no such resource
+     */
+    private <T> T getResource(String url, ObjectReader reader) {
+        return template.execute(url, HttpMethod.GET, UIBackendService::acceptJson, response -> {
+            try {
+                return reader.readValue(response.getBody());
+            } catch (JsonProcessingException e) { // whatever we received, it was not the resource
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
 
-            Product product = mapper.readValue(response.getBody(), Product.class);
-            product.setId(productId);
+    private static void acceptJson(ClientHttpRequest request) {
+        request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON, MediaType.ALL));
+    }
 
-            return Optional.of(product);
-        } catch (RestClientException | JsonProcessingException e) {
-            LOG.error("Cannot get product {}. Exception: {}", productId, e.getMessage(), e);
+    /**
+     * @param downstream the service to request
+     * @return retry for idempotent requests to the service
+     */
+    private Retry retryIdempotent(String downstream) {
+        return retryPolicies == null ? retry : retryPolicies.idempotent(downstream);
+    }
+
+    /**
+     * @param downstream the service to request
+     * @return retry for requests to the service that are not idempotent
+     */
+    private Retry retryNonIdempotent(String downstream) {
+        return retryPolicies == null ? retry : retryPolicies.nonIdempotent(downstream);
+    }
+
+    /**
+     * Send a request to another service, including its retries, as the given operation. The metrics of the request
+     * are tagged with the operation, see {@link ClientRequestMetrics}.
+     *
+     * @param operation name of the operation
+     * @param request   sends the request
+     * @return the response
+     */
+    private static <T> T measured(String operation, Supplier<T> request) {
+        try (ClientRequestMetrics.Operation ignored = ClientRequestMetrics.operation(operation)) {
+            return request.get();
         }
-        return Optional.empty();
     }
 
     /**
-     * Extracts the id under which a resource can be found from JSON.
-     * <p>
-     * TODO i'm pretty sure there are better ways to do this, but i didn't find them.
+     * Send a request to another service, including its retries, as the given operation. The metrics of the request
+     * are tagged with the operation, see {@link ClientRequestMetrics}.
      *
-     * @param node a json node that contains a link to a resource
-     * @return the resources id
+     * @param operation name of the operation
+     * @param request   sends the request
      */
-    private String getIdfromJson(JsonNode node) {
-        JsonNode link = node.findPath("href");
-        String s = link.asText();
-        final String[] parts = s.split("/");
-        return parts[parts.length - 1];
+    private static void measured(String operation, Runnable request) {
+        try (ClientRequestMetrics.Operation ignored = ClientRequestMetrics.operation(operation)) {
+            request.run();
+        }
     }
 
     /**
@@ -459,23 +1065,40 @@ public class UIBackendService {
      * Depends on the cart service to get the cart content and depends on the inventory service to get the price per
      * unit. If either of them fails, the returned total is 0. This is because the store cannot handle partial orders.
      * Its either ordering all items in the cart or none.
+     * <p>
+     * The prices are retrieved with {@link #getProducts(Collection)}, i.e. from the cache, the batch search or
+     * concurrently, rather than one product after another.
      *
      * @param sessionId identifies the session to get total for
      * @return the total money to pay for products in the cart
      */
-    private double getTotal(String sessionId) {
+    double getTotal(String sessionId) {
         CartContent cart = getCartContent(sessionId).orElse(new CartContent());
 
-        double total = 0;
+        return calculateTotal(cart, getProducts(cart.getProductIds())).map(BigDecimal::doubleValue).orElse(0.0);
+    }
+
+    /**
+     * Sums up the prices of all units in a cart.
+     * <p>
+     * Sums up in decimal, such that the total does not depend on the number of units or the order of the products.
+     *
+     * @param cart     the cart to sum up
+     * @param products the products in the cart, by id
+     * @return the total, or an empty optional iff a product of the cart is missing
+     */
+    static Optional<BigDecimal> calculateTotal(CartContent cart, Map<String, Product> products) {
+        BigDecimal total = BigDecimal.ZERO;
 
         for (String productId : cart.getProductIds()) {
-            Optional<Product> product = getSingleProduct(productId);
-            if (product.isEmpty()) {
-                return 0;
+            Product product = products.get(productId);
+            if (product == null) {
+                return Optional.empty();
             }
-            total += product.get().getPrice() * cart.getUnits(productId);
+            BigDecimal units = BigDecimal.valueOf(cart.getUnits(productId));
+            total = total.add(BigDecimal.valueOf(product.getPrice()).multiply(units));
         }
-        return total;
+        return Optional.of(total);
     }
 
     /**
@@ -486,7 +1109,11 @@ public class UIBackendService {
         try {
             LOG.info("Start simulation of an intensive computation task ... Session: {}", sessionId);
             // Returns the duration in milliseconds that the calculation took
-            ResponseEntity<Double> response = template.postForEntity(computationSimulatorUrl, sessionId, Double.class);
+            Supplier<ResponseEntity<Double>> request = () -> template.postForEntity(computationSimulatorUrl,
+                sessionId, Double.class);
+            ResponseEntity<Double> response = measured("simulateComputeIntensiveTask", retryPolicies == null
+                ? request
+                : Retry.decorateSupplier(retryNonIdempotent(RetryPolicies.COMPUTATION_SIMULATOR), request));
             Double duration = response.getBody();
             LOG.info("Finished simulation of an intensive computation task. Duration: {} ms, Session: {}", duration, sessionId);
         } catch (RestClientException e) {
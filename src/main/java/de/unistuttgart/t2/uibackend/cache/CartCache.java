@@ -0,0 +1,95 @@
+package de.unistuttgart.t2.uibackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.unistuttgart.t2.common.CartContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Caches the content of carts by session id, for a short time.
+ * <p>
+ * Meant to be written through: whoever changes a cart puts the new content into the cache, or invalidates the cached
+ * content if the outcome of the change is unknown. Carts that do not exist are cached as well, as an empty optional.
+ * Changes made by anyone else only become visible once the cached content expired.
+ * <p>
+ * Cart contents are mutable, thus the cache only ever hands out copies of the cached contents.
+ */
+public class CartCache implements MeterBinder {
+
+    private final Cache<String, Optional<CartContent>> carts;
+
+    /**
+     * Create a new cart cache.
+     *
+     * @param ttl        how long to cache the content of a cart
+     * @param maxEntries max number of carts to cache
+     */
+    public CartCache(Duration ttl, long maxEntries) {
+        this.carts = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Get the content of the cart with the given session id from the cache, or retrieve and cache it if it is not
+     * cached.
+     * <p>
+     * Exceptions thrown by the retrieval are passed on and nothing is cached.
+     * <p>
+     * The retrieval runs outside of the cache's atomic compute, as that holds a monitor, which would pin a virtual
+     * thread to its carrier for the whole request. Content that was put while the retrieval was in progress wins over
+     * the retrieved content.
+     *
+     * @param sessionId identifies the cart
+     * @param retrieval retrieves the content from the cart service, returns an empty optional iff there is no cart
+     * @return content of cart iff it exists
+     */
+    public Optional<CartContent> get(String sessionId, Function<String, Optional<CartContent>> retrieval) {
+        Optional<CartContent> cached = carts.getIfPresent(sessionId);
+        if (cached == null) {
+            Optional<CartContent> retrieved = retrieval.apply(sessionId);
+            cached = carts.asMap().putIfAbsent(sessionId, retrieved);
+            if (cached == null) {
+                cached = retrieved;
+            }
+        }
+        return cached.map(CartCache::copy);
+    }
+
+    /**
+     * Cache the given content of a cart.
+     *
+     * @param sessionId identifies the cart
+     * @param content   the cart's content as written to the cart service
+     */
+    public void put(String sessionId, CartContent content) {
+        carts.put(sessionId, Optional.of(copy(content)));
+    }
+
+    /**
+     * Remove the content of the cart with the given session id from the cache.
+     *
+     * @param sessionId identifies the cart
+     */
+    public void invalidate(String sessionId) {
+        carts.invalidate(sessionId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, carts, "carts");
+    }
+
+    private static CartContent copy(CartContent content) {
+        return new CartContent(new HashMap<>(content.getContent()));
+    }
+}
@@ -0,0 +1,185 @@
+package de.unistuttgart.t2.uibackend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.concurrent.SingleFlight;
+import de.unistuttgart.t2.uibackend.exceptions.IncompleteCatalogException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches products retrieved from the inventory.
+ * <p>
+ * Products are cached for a fixed time after they were retrieved. Products that the inventory does not know are cached
+ * as well, but usually for a shorter time. The cache holds a bounded number of products and evicts according to
+ * Caffeine's W-TinyLFU policy.
+ * <p>
+ * Products are mutable, thus the cache only ever hands out copies of the cached products.
+ * <p>
+ * The cached number of units may be outdated. Anything that depends on the actual stock, i.e. reservations, must ask
+ * the inventory.
+ */
+public class ProductCache implements MeterBinder {
+
+    private static final String CATALOG = "catalog";
+
+    private final Cache<String, Optional<Product>> products;
+    private final Cache<String, List<Product>> catalog;
+    private final SingleFlight<String, List<Product>> catalogRetrievals = new SingleFlight<>(CATALOG);
+
+    /**
+     * Create a new product cache.
+     *
+     * @param ttl         how long to cache a product
+     * @param negativeTtl how long to cache that a product does not exist
+     * @param maxEntries  max number of products to cache
+     */
+    public ProductCache(Duration ttl, Duration negativeTtl, long maxEntries) {
+        this.products = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfter(new Expiry<String, Optional<Product>>() {
+                @Override
+                public long expireAfterCreate(String key, Optional<Product> value, long currentTime) {
+                    return value.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Optional<Product> value, long currentTime,
+                                              long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Optional<Product> value, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        this.catalog = Caffeine.newBuilder()
+            .maximumSize(1)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Get the product with the given id from the cache, or retrieve and cache it if it is not cached.
+     * <p>
+     * Exceptions thrown by the retrieval are passed on and nothing is cached.
+     * <p>
+     * The retrieval runs outside of the cache's atomic compute, as that holds a monitor, which would pin a virtual
+     * thread to its carrier for the whole request. Thus concurrent misses of the same product may retrieve it more
+     * than once, the first one to finish is cached.
+     *
+     * @param productId id of the product to get
+     * @param retrieval retrieves the product from the inventory, returns an empty optional iff the product does not
+     *                  exist
+     * @return product with given id iff it exists
+     */
+    public Optional<Product> get(String productId, Function<String, Optional<Product>> retrieval) {
+        Optional<Product> cached = products.getIfPresent(productId);
+        if (cached == null) {
+            Optional<Product> retrieved = retrieval.apply(productId);
+            cached = products.asMap().putIfAbsent(productId, retrieved);
+            if (cached == null) {
+                cached = retrieved;
+            }
+        }
+        return cached.map(ProductCache::copy);
+    }
+
+    /**
+     * Get all cached products of the given ids.
+     *
+     * @param productIds ids of the products to get
+     * @return the cached products by their ids. an empty optional means that the product does not exist. ids that are
+     *         not cached have no entry.
+     */
+    public Map<String, Optional<Product>> getAllPresent(Collection<String> productIds) {
+        Map<String, Optional<Product>> result = new HashMap<>();
+        products.getAllPresent(productIds).forEach((id, product) -> result.put(id, product.map(ProductCache::copy)));
+        return result;
+    }
+
+    /**
+     * Cache the given product.
+     *
+     * @param product the product to cache
+     */
+    public void put(Product product) {
+        products.put(product.getId(), Optional.of(copy(product)));
+    }
+
+    /**
+     * Remove the product with the given id from the cache.
+     *
+     * @param productId id of the product to remove
+     */
+    public void invalidate(String productId) {
+        products.invalidate(productId);
+    }
+
+    /**
+     * Get all products from the cache, or retrieve and cache them if they are not cached. All retrieved products are
+     * cached individually as well.
+     * <p>
+     * An empty list is never cached, as it most likely means that the retrieval failed. Neither is an incomplete
+     * catalog, the retrieval's exception is passed on instead.
+     * <p>
+     * If the catalog is not cached, concurrent callers share a single retrieval, such that an expired catalog does
+     * not start one crawl of the inventory per caller.
+     *
+     * @param retrieval retrieves all products from the inventory
+     * @return all products
+     * @throws IncompleteCatalogException if the retrieval missed some products
+     */
+    public List<Product> getCatalog(Supplier<List<Product>> retrieval) {
+        List<Product> cached = catalog.getIfPresent(CATALOG);
+        if (cached == null) {
+            cached = catalogRetrievals.execute(CATALOG, () -> retrieveCatalog(retrieval));
+        }
+        return cached.stream().map(ProductCache::copy).toList();
+    }
+
+    private List<Product> retrieveCatalog(Supplier<List<Product>> retrieval) {
+        // another caller may have retrieved the catalog while this one was waiting
+        List<Product> cached = catalog.getIfPresent(CATALOG);
+        if (cached != null) {
+            return cached;
+        }
+        List<Product> retrieved = retrieval.get();
+        if (retrieved.isEmpty()) {
+            return retrieved;
+        }
+        cached = retrieved.stream().map(ProductCache::copy).toList();
+        cached.forEach(this::put);
+        catalog.put(CATALOG, cached);
+        return cached;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "products");
+        CaffeineCacheMetrics.monitor(registry, catalog, "catalog");
+        catalogRetrievals.bindTo(registry);
+    }
+
+    private static Product copy(Product product) {
+        return new Product(product.getId(), product.getName(), product.getDescription(), product.getUnits(),
+            product.getPrice());
+    }
+}
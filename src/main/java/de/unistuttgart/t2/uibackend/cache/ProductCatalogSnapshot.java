@@ -0,0 +1,144 @@
+package de.unistuttgart.t2.uibackend.cache;
+
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.exceptions.IncompleteCatalogException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Holds a snapshot of all products in the inventory and refreshes it periodically in the background.
+ * <p>
+ * Callers always get the last good snapshot immediately, even while a refresh is running. Only if there is no snapshot
+ * yet, callers wait for the refresh. All callers that wait at the same time share the same refresh, such that there is
+ * at most one crawl of the inventory at a time.
+ * <p>
+ * A crawl that misses some pages never replaces a snapshot. If there is no snapshot yet, the waiting callers get the
+ * products that were retrieved, but they are not kept.
+ * <p>
+ * The products in a snapshot are shared between all callers, thus callers must not modify them.
+ */
+public class ProductCatalogSnapshot implements MeterBinder, InitializingBean, DisposableBean {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final Supplier<List<Product>> crawl;
+    private final Duration refreshInterval;
+
+    private final ScheduledExecutorService scheduler = Executors
+        .newSingleThreadScheduledExecutor(new CustomizableThreadFactory("uibackend-catalog-refresh-"));
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Snapshot>> refreshing = new AtomicReference<>();
+
+    /**
+     * Create a new snapshot. The first refresh starts once the snapshot is initialized.
+     *
+     * @param crawl           retrieves all products from the inventory, throws an
+     *                        {@link IncompleteCatalogException} if some pages cannot be retrieved
+     * @param refreshInterval time between the end of one refresh and the start of the next
+     */
+    public ProductCatalogSnapshot(Supplier<List<Product>> crawl, Duration refreshInterval) {
+        this.crawl = crawl;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Get all products in the inventory as of the last successful refresh.
+     *
+     * @return all products in the inventory. (might be outdated)
+     */
+    public List<Product> getAllProducts() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            return current.products();
+        }
+        Snapshot refreshed = refresh().join();
+        return refreshed == null ? List.of() : refreshed.products();
+    }
+
+    /**
+     * Start a refresh of the snapshot, unless one is already running.
+     * <p>
+     * If the refresh fails, or is incomplete, the last good snapshot is kept.
+     *
+     * @return the refresh, completes with the latest snapshot
+     */
+    public CompletableFuture<Snapshot> refresh() {
+        CompletableFuture<Snapshot> next = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = refreshing.compareAndExchange(null, next);
+        if (running != null) {
+            return running;
+        }
+
+        Snapshot partial = null;
+        try {
+            List<Product> products = crawl.get();
+            if (products.isEmpty()) {
+                LOG.warn("Refresh of product catalog yielded no products, keeping the last snapshot.");
+            } else {
+                snapshot.set(new Snapshot(List.copyOf(products), System.nanoTime()));
+            }
+        } catch (IncompleteCatalogException e) {
+            LOG.warn("Refresh of product catalog is incomplete, keeping the last snapshot. {}", e.getMessage());
+            partial = new Snapshot(e.getProducts(), System.nanoTime());
+        } catch (RuntimeException e) {
+            LOG.error("Cannot refresh product catalog. Exception: {}", e.getMessage(), e);
+        } finally {
+            // complete before clearing, such that no caller starts another crawl while this one is being handed out
+            Snapshot current = snapshot.get();
+            next.complete(current == null ? partial : current);
+            refreshing.compareAndSet(next, null);
+        }
+        return next;
+    }
+
+    /**
+     * Get the age of the current snapshot.
+     *
+     * @return age of the snapshot, or a negative duration if there is no snapshot yet
+     */
+    public Duration getAge() {
+        Snapshot current = snapshot.get();
+        return current == null ? Duration.ofNanos(-1) : Duration.ofNanos(System.nanoTime() - current.createdAt());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TimeGauge.builder("t2.products.snapshot.age", this, TimeUnit.NANOSECONDS, s -> s.getAge().toNanos())
+            .description("Age of the snapshot of all products, negative if there is none yet")
+            .register(registry);
+    }
+
+    /**
+     * All products at a certain point in time.
+     *
+     * @param products  all products
+     * @param createdAt {@link System#nanoTime()} at creation
+     */
+    public record Snapshot(List<Product> products, long createdAt) {}
+}
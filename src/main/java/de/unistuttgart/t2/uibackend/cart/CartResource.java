@@ -0,0 +1,24 @@
+package de.unistuttgart.t2.uibackend.cart;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.unistuttgart.t2.common.CartContent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cart as the cart service (i.e. Spring Data REST) delivers it. The links and everything else the cart service adds
+ * are ignored.
+ *
+ * @param content number of units by product id
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CartResource(Map<String, Integer> content) {
+
+    /**
+     * @return the content of the cart, empty if the cart has no content
+     */
+    public CartContent toCartContent() {
+        return new CartContent(content == null ? new HashMap<>() : content);
+    }
+}
@@ -0,0 +1,135 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks that nobody waits for on a bounded pool of platform threads.
+ * <p>
+ * If all threads are busy and the queue is full, the submitting thread runs the task itself. That throttles the
+ * submitter instead of dropping the task. The same goes for tasks submitted after shutdown, e.g. by requests that are
+ * still being served while the application stops.
+ * <p>
+ * On shutdown, queued tasks still get a short grace period to finish.
+ */
+public class BackgroundTasks implements DisposableBean, MeterBinder {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private static final Duration GRACE_PERIOD = Duration.ofSeconds(10);
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder ranBySubmitter = new LongAdder();
+
+    // no-op until bound to a registry
+    private volatile MeterRegistry registry;
+
+    /**
+     * Create new background tasks.
+     *
+     * @param name          name of the tasks, for the threads and the metrics
+     * @param concurrency   max number of tasks that run at the same time
+     * @param queueCapacity max number of tasks waiting for a thread
+     */
+    public BackgroundTasks(String name, int concurrency, int queueCapacity) {
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("uibackend-" + name + "-"),
+            this::runBySubmitter);
+    }
+
+    /**
+     * Run a task the executor did not accept on the submitting thread. Unlike the
+     * {@link ThreadPoolExecutor.CallerRunsPolicy}, this also runs tasks submitted after shutdown, rather than silently
+     * dropping them.
+     */
+    private void runBySubmitter(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            LOG.debug("Background tasks {} are shut down, running task on the submitting thread.", name);
+        }
+        ranBySubmitter.increment();
+        task.run();
+    }
+
+    /**
+     * Run the given task in the background.
+     * <p>
+     * Exceptions thrown by the task are logged and otherwise ignored.
+     *
+     * @param task what the task does, for the logs and the metrics
+     * @param run  the task
+     */
+    public void submit(String task, Runnable run) {
+        long submitted = System.nanoTime();
+        executor.execute(() -> {
+            try {
+                run.run();
+            } catch (RuntimeException e) {
+                LOG.error("Background task {} failed. Exception: {}", task, e.getMessage(), e);
+            } finally {
+                MeterRegistry meters = registry;
+                if (meters != null) {
+                    Timer.builder("t2.background-tasks.duration")
+                        .description("Time from submitting a background task until it finished, including the wait")
+                        .tag("name", name)
+                        .tag("task", task)
+                        .register(meters)
+                        .record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return number of tasks waiting for a thread
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of tasks the submitting thread ran itself, because the queue was full or the tasks were shut down
+     */
+    public long getRanBySubmitter() {
+        return ranBySubmitter.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("t2.background-tasks.queued", this, BackgroundTasks::getQueued)
+            .description("Background tasks waiting for a thread")
+            .tag("name", name)
+            .register(registry);
+        Gauge.builder("t2.background-tasks.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Background tasks that are running")
+            .tag("name", name)
+            .register(registry);
+        FunctionCounter.builder("t2.background-tasks.ran-by-submitter", ranBySubmitter, LongAdder::sum)
+            .description("Background tasks the submitting thread ran itself, because the queue was full or on shutdown")
+            .tag("name", name)
+            .register(registry);
+        this.registry = registry;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(GRACE_PERIOD.toMillis(), TimeUnit.MILLISECONDS)) {
+            LOG.warn("{} background tasks did not finish within {}.", executor.shutdownNow().size(), GRACE_PERIOD);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Merges concurrent writes for the same key into a single batch write.
+ * <p>
+ * Writes for a key are queued. The first thread that finds no batch in progress for the key becomes the combiner: it
+ * takes all queued writes, hands them to the {@link BatchWriter} at once, and completes all of them with the outcome of
+ * that batch. Writes that arrive while a batch is in progress are taken by the next batch. Thus batches for one key
+ * never overlap, and the writes of a batch stay in the order they arrived.
+ * <p>
+ * A key is only kept while writes for it are queued or in progress, thus memory does not grow with the number of idle
+ * keys.
+ *
+ * @param <T> type of a single write
+ */
+public class Coalescer<T> {
+
+    private final Map<String, Slot<T>> slots = new ConcurrentHashMap<>();
+    private final BatchWriter<T> writer;
+
+    /**
+     * Create a new coalescer.
+     *
+     * @param writer writes a batch of writes for one key
+     */
+    public Coalescer(BatchWriter<T> writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Submit a write for the given key.
+     * <p>
+     * If no batch is in progress for the key, the batch is written by the calling thread, and the returned future is
+     * already completed. Otherwise the future completes once another thread wrote the batch with this write.
+     *
+     * @param key   the key to write for
+     * @param write the write
+     * @return completes with the outcome of the batch that contained the write
+     */
+    public CompletableFuture<Void> submit(String key, T write) {
+        Pending<T> pending = new Pending<>(write, new CompletableFuture<>());
+
+        // enqueue atomically with the removal of idle slots, such that no write is queued in a removed slot
+        Slot<T> slot = slots.compute(key, (k, s) -> {
+            Slot<T> result = s == null ? new Slot<>() : s;
+            result.queue.add(pending);
+            return result;
+        });
+
+        while (slot.running.compareAndSet(false, true)) {
+            List<Pending<T>> batch = new ArrayList<>();
+            for (Pending<T> p = slot.queue.poll(); p != null; p = slot.queue.poll()) {
+                batch.add(p);
+            }
+
+            if (!batch.isEmpty()) {
+                write(key, batch);
+            }
+
+            slot.running.set(false);
+            if (!slot.queue.isEmpty()) {
+                continue; // writes arrived while writing, take them unless another thread already does
+            }
+            slots.computeIfPresent(key, (k, s) -> s == slot && s.queue.isEmpty() && !s.running.get() ? null : s);
+            break;
+        }
+        return pending.future;
+    }
+
+    private void write(String key, List<Pending<T>> batch) {
+        List<T> writes = new ArrayList<>(batch.size());
+        batch.forEach(p -> writes.add(p.write));
+        try {
+            writer.write(key, writes);
+            batch.forEach(p -> p.future.complete(null));
+        } catch (Exception e) {
+            batch.forEach(p -> p.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * @return number of keys with queued writes or a batch in progress
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Writes a batch of writes for one key.
+     *
+     * @param <T> type of a single write
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+
+        /**
+         * Write all given writes at once.
+         *
+         * @param key    the key to write for
+         * @param writes the writes, in the order they arrived
+         * @throws Exception if the batch could not be written, fails all writes of the batch
+         */
+        void write(String key, List<T> writes) throws Exception;
+    }
+
+    private record Pending<T>(T write, CompletableFuture<Void> future) {}
+
+    private static final class Slot<T> {
+        final Queue<Pending<T>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean running = new AtomicBoolean(false);
+    }
+}
@@ -0,0 +1,244 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs a number of independent lookups concurrently on a bounded executor and collects their results in the order of
+ * the inputs.
+ * <p>
+ * All lookups of one call share a single deadline. Lookups that fail, do not finish in time or are rejected because
+ * the executor is saturated are reported as an empty optional, just like a lookup that did not find anything. Lookups
+ * that do not finish in time are interrupted.
+ * <p>
+ * Calls that must not be abandoned, because they change something, go through
+ * {@link #mapToCompletion(List, Function)} instead.
+ */
+public class FanOut implements DisposableBean, MeterBinder {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final ExecutorService executor;
+    private final Duration deadline;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a fan out with its own bounded pool of platform threads.
+     * <p>
+     * If all threads are busy and the queue is full, further lookups are rejected right away, instead of making the
+     * caller wait.
+     *
+     * @param parallelism   max number of lookups that run at the same time
+     * @param queueCapacity max number of lookups waiting for a thread
+     * @param deadline      max time one call to {@link #map(List, Function)} may take
+     */
+    public FanOut(int parallelism, int queueCapacity, Duration deadline) {
+        this(parallelism, queueCapacity, deadline, new CustomizableThreadFactory("uibackend-fan-out-"));
+    }
+
+    /**
+     * Create a fan out with its own bounded pool of threads from the given factory, e.g. virtual threads. The pool is
+     * bounded regardless of the kind of threads, such that the fan out never places more than {@code parallelism}
+     * requests at once.
+     *
+     * @param parallelism   max number of lookups that run at the same time
+     * @param queueCapacity max number of lookups waiting for a thread
+     * @param deadline      max time one call to {@link #map(List, Function)} may take
+     * @param threadFactory creates the threads of the pool
+     */
+    public FanOut(int parallelism, int queueCapacity, Duration deadline, ThreadFactory threadFactory) {
+        this(new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy()), deadline);
+    }
+
+    /**
+     * Create a fan out on the given executor.
+     *
+     * @param executor executor to run the lookups on
+     * @param deadline max time one call to {@link #map(List, Function)} may take
+     */
+    public FanOut(ExecutorService executor, Duration deadline) {
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("deadline must be positive but is " + deadline);
+        }
+        this.executor = executor;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Apply the given lookup to all inputs concurrently.
+     *
+     * @param inputs what to look up
+     * @param lookup the lookup to apply to each input
+     * @param <T>    type of the inputs
+     * @param <R>    type of the results
+     * @return one result per input, in the same order as the inputs
+     */
+    public <T, R> List<Optional<R>> map(List<T> inputs, Function<T, Optional<R>> lookup) {
+        List<Optional<R>> results = new ArrayList<>(inputs.size());
+
+        // not worth a thread hand over
+        if (inputs.size() < 2) {
+            for (T input : inputs) {
+                results.add(lookup.apply(input));
+            }
+            return results;
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        // null for rejected lookups
+        List<Future<Optional<R>>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            try {
+                futures.add(executor.submit(() -> lookup.apply(input)));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Lookup of {} rejected, all threads are busy and the queue is full.", input);
+                rejected.increment();
+                futures.add(null);
+            }
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Optional<R>> future = futures.get(i);
+            if (future == null) {
+                results.add(Optional.empty());
+                continue;
+            }
+            try {
+                results.add(future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                LOG.warn("Lookup of {} did not finish within {}.", inputs.get(i), deadline);
+                future.cancel(true);
+                results.add(Optional.empty());
+            } catch (ExecutionException e) {
+                LOG.error("Lookup of {} failed. Exception: {}", inputs.get(i), e.getCause().getMessage(), e.getCause());
+                results.add(Optional.empty());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.stream().filter(Objects::nonNull).forEach(f -> f.cancel(true));
+                while (results.size() < inputs.size()) {
+                    results.add(Optional.empty());
+                }
+                return results;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Apply the given call to all inputs concurrently, and wait for the outcome of each call.
+     * <p>
+     * Unlike {@link #map(List, Function)}, this is meant for calls that are not idempotent, e.g. reservations. Such a
+     * call may have taken effect even if it did not finish in time, thus the calls are neither subject to the deadline
+     * nor ever interrupted, and calls that the saturated executor rejects are run by the caller. Calls that fail are
+     * reported as an empty optional.
+     *
+     * @param inputs what to apply the call to
+     * @param call   the call to apply to each input
+     * @param <T>    type of the inputs
+     * @param <R>    type of the results
+     * @return one result per input, in the same order as the inputs
+     */
+    public <T, R> List<Optional<R>> mapToCompletion(List<T> inputs, Function<T, Optional<R>> call) {
+        List<Optional<R>> results = new ArrayList<>(inputs.size());
+
+        // not worth a thread hand over
+        if (inputs.size() < 2) {
+            for (T input : inputs) {
+                results.add(complete(input, call));
+            }
+            return results;
+        }
+
+        List<Future<Optional<R>>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            try {
+                futures.add(executor.submit(() -> call.apply(input)));
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Call for {} rejected, all threads are busy and the queue is full. Running it myself.",
+                    input);
+                futures.add(CompletableFuture.completedFuture(complete(input, call)));
+            }
+        }
+
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Optional<R>> future = futures.get(i);
+            Optional<R> result = null;
+            while (result == null) {
+                try {
+                    result = future.get(1, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    if (executor.isTerminated()) { // shut down before the call started, it never will
+                        LOG.warn("Call for {} dropped, the fan out is shut down.", inputs.get(i));
+                        result = Optional.empty();
+                    }
+                } catch (ExecutionException e) {
+                    LOG.error("Call for {} failed. Exception: {}", inputs.get(i), e.getCause().getMessage(),
+                        e.getCause());
+                    result = Optional.empty();
+                } catch (InterruptedException e) {
+                    // the call goes on anyway, thus its outcome is still needed
+                    interrupted = true;
+                }
+            }
+            results.add(result);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    private <T, R> Optional<R> complete(T input, Function<T, Optional<R>> call) {
+        try {
+            return call.apply(input);
+        } catch (RuntimeException e) {
+            LOG.error("Call for {} failed. Exception: {}", input, e.getMessage(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return number of lookups that were rejected because the executor was saturated
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("t2.fan-out.rejected", rejected, LongAdder::sum)
+            .description("Lookups that were rejected because all threads were busy and the queue was full")
+            .register(registry);
+    }
+}
@@ -0,0 +1,99 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into a single call.
+ * <p>
+ * The first caller for a key makes the call. Everyone who asks for the same key while that call is in flight waits for
+ * it and gets the same result, or the same exception. Once the call is done, the next caller for the key makes a new
+ * call. Nothing is cached.
+ * <p>
+ * All callers get the same result object, thus mutable results must be copied by the callers.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the results
+ */
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder collapsed = new LongAdder();
+    private final String name;
+
+    /**
+     * Create a new single flight.
+     *
+     * @param name name of the calls, for the metrics
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Make the given call, unless a call for the same key is in flight already. In that case, wait for that call.
+     *
+     * @param key  the key to call for
+     * @param call the call
+     * @return the result of the call
+     * @throws RuntimeException the exception of the call, if it failed
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            collapsed.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return number of calls that waited for a call in flight instead of making their own
+     */
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("t2.single-flight.collapsed", collapsed, LongAdder::sum)
+            .description("Calls that waited for an identical call in flight instead of making their own")
+            .tag("name", name)
+            .register(registry);
+        Gauge.builder("t2.single-flight.in-flight", inFlight, Map::size)
+            .description("Distinct calls in flight")
+            .tag("name", name)
+            .register(registry);
+    }
+}
@@ -0,0 +1,40 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks, shared by any number of keys.
+ * <p>
+ * Each key always gets the same lock, thus work on the same key never overlaps. Different keys may share a lock, which
+ * only costs some concurrency. Unlike a lock per key, memory does not grow with the number of keys.
+ */
+public class StripedLocks {
+
+    private final Lock[] locks;
+
+    /**
+     * Create new striped locks.
+     *
+     * @param stripes number of locks (must be positive)
+     */
+    public StripedLocks(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Number of stripes must be positive.");
+        }
+        locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Get the lock for the given key.
+     *
+     * @param key the key
+     * @return the key's lock
+     */
+    public Lock get(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,84 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors that start a new virtual thread for each task, and factories for virtual threads.
+ * <p>
+ * Virtual threads require Java 21, while the service is built for Java 17. Thus they are looked up at runtime, and if
+ * the runtime has no virtual threads, platform threads are used instead.
+ */
+public final class VirtualThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+    private VirtualThreads() {}
+
+    private static MethodHandle lookup() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the runtime has virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task.
+     *
+     * @param namePrefix prefix for the names of platform threads, used only if there are no virtual threads
+     * @return the executor
+     */
+    public static ExecutorService newExecutor(String namePrefix) {
+        if (isSupported()) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+            } catch (Throwable e) {
+                LOG.error("Cannot create executor for virtual threads. Exception: {}", e.getMessage(), e);
+            }
+        }
+        LOG.warn("Virtual threads are not available on Java {}, using platform threads for '{}' instead.",
+            Runtime.version().feature(), namePrefix);
+        return Executors.newCachedThreadPool(new CustomizableThreadFactory(namePrefix));
+    }
+
+    /**
+     * Create a factory for virtual threads, e.g. for a bounded pool whose threads may block cheaply.
+     *
+     * @param namePrefix prefix for the names of the threads
+     * @return the factory
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (isSupported()) {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                LOG.error("Cannot create factory for virtual threads. Exception: {}", e.getMessage(), e);
+            }
+        }
+        LOG.warn("Virtual threads are not available on Java {}, using platform threads for '{}' instead.",
+            Runtime.version().feature(), namePrefix);
+        return new CustomizableThreadFactory(namePrefix);
+    }
+}
@@ -0,0 +1,38 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lets Tomcat handle the http requests on the given executor, e.g. one that starts a new virtual thread for each
+ * request.
+ * <p>
+ * Tomcat does not shut down executors it did not create itself. Thus the customizer shuts the executor down once the
+ * application stops, i.e. after Tomcat stopped accepting requests.
+ */
+public class VirtualThreadsCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler>, DisposableBean {
+
+    private final ExecutorService executor;
+
+    /**
+     * Create a new customizer.
+     *
+     * @param executor executor to handle the http requests on
+     */
+    public VirtualThreadsCustomizer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void customize(ProtocolHandler protocolHandler) {
+        protocolHandler.setExecutor(executor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
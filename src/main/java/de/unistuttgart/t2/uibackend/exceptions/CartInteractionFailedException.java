@@ -15,4 +15,8 @@ public final class CartInteractionFailedException extends Exception {
     public CartInteractionFailedException(String message) {
         super(message);
     }
+
+    public CartInteractionFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
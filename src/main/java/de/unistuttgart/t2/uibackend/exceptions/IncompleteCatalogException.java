@@ -0,0 +1,31 @@
+package de.unistuttgart.t2.uibackend.exceptions;
+
+import de.unistuttgart.t2.common.Product;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Indicates that not all pages of products could be retrieved from the inventory.
+ * <p>
+ * Holds the products of the pages that were retrieved, for callers that rather show some products than none.
+ */
+public final class IncompleteCatalogException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Product> products;
+
+    public IncompleteCatalogException(String message, List<Product> products) {
+        super(message);
+        this.products = List.copyOf(products);
+    }
+
+    /**
+     * @return the products of the pages that were retrieved
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+}
@@ -0,0 +1,46 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports the state of the circuit breakers of the other services.
+ * <p>
+ * An open circuit means that another service is unavailable, not that this service is. Thus open circuits are
+ * reported with their own status, that does not take the overall health down.
+ */
+public class CircuitBreakersHealthIndicator implements HealthIndicator {
+
+    public static final Status CIRCUIT_OPEN = new Status("CIRCUIT_OPEN");
+
+    private final CircuitBreakerRegistry circuitBreakers;
+
+    public CircuitBreakersHealthIndicator(CircuitBreakerRegistry circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @Override
+    public Health health() {
+        boolean open = false;
+        Map<String, Object> details = new TreeMap<>();
+
+        for (CircuitBreaker circuitBreaker : circuitBreakers.getAllCircuitBreakers()) {
+            CircuitBreaker.State state = circuitBreaker.getState();
+            CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+            open |= state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+
+            details.put(circuitBreaker.getName(), Map.of(
+                "state", state,
+                "failureRate", metrics.getFailureRate(),
+                "slowCallRate", metrics.getSlowCallRate(),
+                "notPermittedCalls", metrics.getNumberOfNotPermittedCalls()));
+        }
+        return Health.status(open ? CIRCUIT_OPEN : Status.UP).withDetails(details).build();
+    }
+}
@@ -0,0 +1,120 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times every request to the other services, such that slow responses can be attributed to the service, the
+ * operation and the retry attempt that caused them.
+ * <p>
+ * Each attempt is recorded by the timer {@value #METRIC}, tagged with
+ * <ul>
+ * <li>{@code downstream}, the name of the service, told apart by the longest url that prefixes the request's url,</li>
+ * <li>{@code operation}, the operation of the UI backend that sent the request, see {@link #operation(String)},</li>
+ * <li>{@code status}, the status code of the response, or {@code REJECTED} if the request was not sent because of
+ * the {@link DownstreamIsolationInterceptor}, or {@code IO_ERROR} if there was no response, and</li>
+ * <li>{@code attempt}, the number of the attempt within the operation, starting with 1.</li>
+ * </ul>
+ * The timer is registered with the application's registry, thus the configured percentiles apply to it as well.
+ */
+public class ClientRequestMetrics implements ClientHttpRequestInterceptor {
+
+    public static final String METRIC = "t2.client.requests";
+    public static final String UNKNOWN = "unknown";
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final List<Map.Entry<String, String>> downstreams = new ArrayList<>();
+
+    /**
+     * Create new metrics for the requests to the given services.
+     *
+     * @param registry    registry to register the timers with
+     * @param downstreams urls of the other services, by name of the service
+     */
+    public ClientRequestMetrics(MeterRegistry registry, Map<String, String> downstreams) {
+        this.registry = registry;
+        this.downstreams.addAll(downstreams.entrySet());
+        this.downstreams.sort(Comparator.comparing((Map.Entry<String, String> d) -> d.getValue().length()).reversed());
+    }
+
+    /**
+     * Start an operation on the current thread. Requests sent by the current thread until the operation is closed
+     * are tagged with the operation, and each of them counts as another attempt.
+     * <p>
+     * Operations may be nested, closing the inner one continues the outer one.
+     *
+     * @param name name of the operation, e.g. getCartContent
+     * @return the operation, to be closed once it is done
+     */
+    public static Operation operation(String name) {
+        Operation operation = new Operation(name, CURRENT.get());
+        CURRENT.set(operation);
+        return operation;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+        throws IOException {
+        Operation operation = CURRENT.get();
+        String url = request.getURI().toString();
+        String downstream = downstreams.stream().filter(d -> url.startsWith(d.getValue())).map(Map.Entry::getKey)
+            .findFirst().orElse(UNKNOWN);
+
+        Timer.Sample sample = Timer.start(registry);
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } catch (BulkheadFullException | CallNotPermittedException e) {
+            status = "REJECTED";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC)
+                .description("Requests to the other services, one per attempt")
+                .tag("downstream", downstream)
+                .tag("operation", operation == null ? UNKNOWN : operation.name)
+                .tag("status", status)
+                .tag("attempt", String.valueOf(operation == null ? 1 : ++operation.attempts))
+                .register(registry));
+        }
+    }
+
+    /**
+     * An operation of the UI backend, that sends one request to another service, or retries it.
+     */
+    public static final class Operation implements AutoCloseable {
+
+        private final String name;
+        private final Operation outer;
+        private int attempts;
+
+        private Operation(String name, Operation outer) {
+            this.name = name;
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+}
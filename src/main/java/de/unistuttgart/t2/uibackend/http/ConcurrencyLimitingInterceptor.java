@@ -0,0 +1,87 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests that are in flight at the same time.
+ * <p>
+ * A plain cap for when requests are handled on virtual threads: there is no bounded pool of request threads anymore,
+ * thus nothing else bounds the number of requests to the other services. Surplus requests wait for a permit, and fail
+ * if they get none within the acquire timeout. The limit should not exceed the max number of pooled connections.
+ * <p>
+ * The permit is released once the response is received, i.e. before the response body is read.
+ * <p>
+ * The cap does not keep virtual threads from being pinned to their carriers. That is up to the code that blocks: the
+ * caches retrieve outside of their atomic computes, and the pool of the http client guards its state with a
+ * {@code ReentrantLock} rather than {@code synchronized}. The load test checks for pinned threads.
+ */
+public class ConcurrencyLimitingInterceptor implements ClientHttpRequestInterceptor, MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final Duration acquireTimeout;
+
+    /**
+     * Create a new limiting interceptor.
+     *
+     * @param maxConcurrentRequests max number of requests in flight at the same time
+     * @param acquireTimeout        max time a request waits for a permit, before it fails
+     */
+    public ConcurrencyLimitingInterceptor(int maxConcurrentRequests, Duration acquireTimeout) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Value of max concurrent requests must be positive.");
+        }
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+        throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IOException(String.format("No permit for request to %s within %s, %d requests in flight.",
+                    request.getURI(), acquireTimeout, maxConcurrentRequests));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a permit for " + request.getURI());
+        }
+
+        try {
+            return execution.execute(request, body);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return number of requests in flight
+     */
+    public int getInFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("t2.http.requests.in-flight", this, ConcurrencyLimitingInterceptor::getInFlight)
+            .description("Requests to other services that are in flight")
+            .register(registry);
+        Gauge.builder("t2.http.requests.waiting", permits, Semaphore::getQueueLength)
+            .description("Requests to other services that wait for a permit")
+            .register(registry);
+    }
+}
@@ -0,0 +1,143 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolates the other services from each other, such that one slow or failing service does not take the requests to
+ * the other services down with it.
+ * <p>
+ * Each service gets a circuit breaker and a bulkhead. The bulkhead limits the number of requests to the service that
+ * are in flight at the same time, requests beyond the limit wait briefly for a permit. The circuit breaker opens once
+ * too many requests to the service failed or were slow, and closes again after a few trial requests succeeded.
+ * Requests that get no permit from the bulkhead, or arrive while the circuit is open, are not sent, but fail with a
+ * {@link BulkheadFullException} or a {@link CallNotPermittedException}. Both are unchecked, thus the
+ * {@link org.springframework.web.client.RestTemplate} passes them on as they are, instead of reporting them like a
+ * failed request.
+ * <p>
+ * A request failed if it did not get a response, or the response has a 5xx status. Services are told apart by the
+ * longest url that prefixes the request's url. Requests to other urls pass unchanged.
+ */
+public class DownstreamIsolationInterceptor implements ClientHttpRequestInterceptor, MeterBinder {
+
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+    private final BulkheadRegistry bulkheads = BulkheadRegistry.ofDefaults();
+    private final List<Isolation> isolations = new ArrayList<>();
+
+    /**
+     * Create a new isolating interceptor.
+     *
+     * @param downstreams the services to isolate
+     */
+    public DownstreamIsolationInterceptor(List<Downstream> downstreams) {
+        for (Downstream downstream : downstreams) {
+            CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(downstream.failureRateThreshold())
+                .slowCallDurationThreshold(downstream.slowCallDuration())
+                .slowCallRateThreshold(downstream.slowCallRateThreshold())
+                .slidingWindowSize(downstream.slidingWindowSize())
+                .minimumNumberOfCalls(downstream.minimumCalls())
+                .waitDurationInOpenState(downstream.waitInOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordResult(result -> result instanceof HttpStatusCode status && status.is5xxServerError())
+                .build();
+            BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(downstream.maxConcurrentCalls())
+                .maxWaitDuration(downstream.maxWait())
+                .build();
+
+            isolations.add(new Isolation(downstream.url(),
+                circuitBreakers.circuitBreaker(downstream.name(), circuitBreakerConfig),
+                bulkheads.bulkhead(downstream.name(), bulkheadConfig)));
+        }
+        isolations.sort(Comparator.comparing((Isolation isolation) -> isolation.url().length()).reversed());
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+        throws IOException {
+        String url = request.getURI().toString();
+        Isolation isolation = isolations.stream().filter(i -> url.startsWith(i.url())).findFirst().orElse(null);
+        if (isolation == null) {
+            return execution.execute(request, body);
+        }
+
+        Bulkhead bulkhead = isolation.bulkhead();
+        CircuitBreaker circuitBreaker = isolation.circuitBreaker();
+
+        if (!bulkhead.tryAcquirePermission()) {
+            throw BulkheadFullException.createBulkheadFullException(bulkhead);
+        }
+        try {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                throw CallNotPermittedException.createCallNotPermittedException(circuitBreaker);
+            }
+            long start = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                circuitBreaker.onResult(System.nanoTime() - start, TimeUnit.NANOSECONDS, response.getStatusCode());
+                return response;
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    /**
+     * @return the circuit breakers, one per service
+     */
+    public CircuitBreakerRegistry getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(registry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(registry);
+    }
+
+    /**
+     * Isolation settings of a downstream service.
+     *
+     * @param name                  name of the service, e.g. inventory
+     * @param url                   url of the service, requests to urls starting with it are isolated
+     * @param failureRateThreshold  percentage of failed requests at which the circuit opens
+     * @param slowCallDuration      requests that take longer are slow
+     * @param slowCallRateThreshold percentage of slow requests at which the circuit opens
+     * @param slidingWindowSize     number of recent requests the rates are calculated of
+     * @param minimumCalls          min number of requests before the rates are calculated at all
+     * @param waitInOpenState       how long the circuit stays open before trial requests are let through
+     * @param maxConcurrentCalls    max number of requests to the service in flight at the same time
+     * @param maxWait               max time a request waits for the bulkhead, before it is rejected
+     */
+    public record Downstream(String name, String url, float failureRateThreshold, Duration slowCallDuration,
+                             float slowCallRateThreshold, int slidingWindowSize, int minimumCalls,
+                             Duration waitInOpenState, int maxConcurrentCalls, Duration maxWait) {}
+
+    private record Isolation(String url, CircuitBreaker circuitBreaker, Bulkhead bulkhead) {}
+}
@@ -0,0 +1,160 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Creates requests on a pool of persistent connections.
+ * <p>
+ * Each downstream service gets its own limit of connections and may get its own read timeout. Downstream services are
+ * told apart by host and port, thus services that share host and port share their settings as well.
+ */
+public class PooledClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory implements MeterBinder {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final List<Downstream> downstreams;
+    private final Map<String, RequestConfig> configByAuthority = new HashMap<>();
+
+    /**
+     * Create a new pooled request factory.
+     *
+     * @param maxConnections max number of connections, over all downstream services
+     * @param keepAlive      how long to keep an idle connection, unless the downstream service says otherwise
+     * @param connectTimeout max time to establish a connection
+     * @param readTimeout    max time to wait for a response, unless the downstream service has its own timeout
+     * @param acquireTimeout max time to wait for a free connection from the pool
+     * @param downstreams    the downstream services
+     */
+    public PooledClientHttpRequestFactory(int maxConnections, Duration keepAlive, Duration connectTimeout,
+                                          Duration readTimeout, Duration acquireTimeout,
+                                          List<Downstream> downstreams) {
+        this(PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                    .build())
+                .build(),
+            RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeout.toMillis()))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive.toMillis()))
+                .build(),
+            keepAlive, downstreams);
+    }
+
+    private PooledClientHttpRequestFactory(PoolingHttpClientConnectionManager connectionManager,
+                                           RequestConfig defaultConfig, Duration keepAlive,
+                                           List<Downstream> downstreams) {
+        super(HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(defaultConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive.toMillis()))
+            .build());
+        this.connectionManager = connectionManager;
+        this.downstreams = downstreams;
+
+        for (Downstream downstream : downstreams) {
+            connectionManager.setMaxPerRoute(downstream.route(), downstream.maxConnections());
+            if (downstream.readTimeout() != null) {
+                configByAuthority.put(downstream.authority(), RequestConfig.copy(defaultConfig)
+                    .setResponseTimeout(Timeout.ofMilliseconds(downstream.readTimeout().toMillis()))
+                    .build());
+            }
+        }
+    }
+
+    @Override
+    protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+        RequestConfig config = configByAuthority.get(Downstream.authority(uri));
+        if (config == null) {
+            return super.createHttpContext(httpMethod, uri);
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(config);
+        return context;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry, "all", connectionManager, PoolingHttpClientConnectionManager::getTotalStats);
+        for (Downstream downstream : downstreams) {
+            register(registry, downstream.name(), connectionManager, cm -> cm.getStats(downstream.route()));
+        }
+    }
+
+    private static void register(MeterRegistry registry, String downstream, PoolingHttpClientConnectionManager cm,
+                                 Function<PoolingHttpClientConnectionManager, PoolStats> stats) {
+        Map<String, ToDoubleFunction<PoolStats>> states = Map.of(
+            "leased", PoolStats::getLeased,
+            "available", PoolStats::getAvailable,
+            "pending", PoolStats::getPending);
+
+        states.forEach((state, value) -> Gauge
+            .builder("t2.http.pool.connections", cm, c -> value.applyAsDouble(stats.apply(c)))
+            .description("Connections in the pool of the http client, by state")
+            .tag("downstream", downstream)
+            .tag("state", state)
+            .register(registry));
+
+        Gauge.builder("t2.http.pool.max", cm, c -> stats.apply(c).getMax())
+            .description("Max number of connections in the pool of the http client")
+            .tag("downstream", downstream)
+            .register(registry);
+    }
+
+    /**
+     * Connection settings of a downstream service.
+     *
+     * @param name           name of the service, e.g. cart
+     * @param url            url of the service
+     * @param maxConnections max number of connections to the service
+     * @param readTimeout    max time to wait for a response of the service, or 'null' for the default
+     */
+    public record Downstream(String name, URI url, int maxConnections, Duration readTimeout) {
+
+        HttpRoute route() {
+            boolean secure = "https".equalsIgnoreCase(url.getScheme());
+            return new HttpRoute(new HttpHost(url.getScheme(), url.getHost(), port(url)), null, secure);
+        }
+
+        String authority() {
+            return authority(url);
+        }
+
+        static String authority(URI uri) {
+            return uri.getHost() + ":" + port(uri);
+        }
+
+        private static int port(URI uri) {
+            if (uri.getPort() != -1) {
+                return uri.getPort();
+            }
+            return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+    }
+}
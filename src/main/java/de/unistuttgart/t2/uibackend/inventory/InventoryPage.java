@@ -0,0 +1,15 @@
+package de.unistuttgart.t2.uibackend.inventory;
+
+import de.unistuttgart.t2.common.Product;
+
+import java.util.List;
+
+/**
+ * One page of products from the inventory.
+ *
+ * @param products   the products on the page
+ * @param next       url of the next page, or 'null' if this is the last page
+ * @param size       max number of products per page, 0 if unknown
+ * @param totalPages total number of pages, 0 if unknown
+ */
+public record InventoryPage(List<Product> products, String next, int size, int totalPages) {}
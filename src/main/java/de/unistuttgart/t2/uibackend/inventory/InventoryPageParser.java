@@ -0,0 +1,221 @@
+package de.unistuttgart.t2.uibackend.inventory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.unistuttgart.t2.common.Product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses pages of products as the inventory (i.e. Spring Data REST) delivers them, in a single pass over the response
+ * stream.
+ * <p>
+ * Neither the response nor the products are materialized as json tree. The parser picks the products from
+ * {@code _embedded.inventory}, the link to the next page from {@code _links.next.href} and the page metadata from
+ * {@code page}. Everything else is skipped.
+ */
+public class InventoryPageParser {
+
+    private final JsonFactory factory;
+
+    public InventoryPageParser() {
+        this(new JsonFactory());
+    }
+
+    public InventoryPageParser(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Parse one page of products.
+     *
+     * @param body the response body
+     * @return the page
+     * @throws IOException if the body cannot be read or is no page of products
+     */
+    public InventoryPage parse(InputStream body) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    private InventoryPage parse(JsonParser parser) throws IOException {
+        List<Product> products = new ArrayList<>();
+        String next = null;
+        int size = 0;
+        int totalPages = 0;
+
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("_embedded".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String relation = parser.currentName();
+                    JsonToken content = parser.nextToken();
+                    if ("inventory".equals(relation) && content == JsonToken.START_ARRAY) {
+                        parseProducts(parser, products);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                expectEndOfObject(parser);
+            } else if ("_links".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String relation = parser.currentName();
+                    parser.nextToken();
+                    if ("next".equals(relation)) {
+                        next = parseHref(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                expectEndOfObject(parser);
+            } else if ("page".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if ("size".equals(name)) {
+                        size = parser.getValueAsInt();
+                    } else if ("totalPages".equals(name)) {
+                        totalPages = parser.getValueAsInt();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                expectEndOfObject(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        // a truncated page must not pass for the last one, just because its link to the next page is missing
+        expectEndOfObject(parser);
+
+        return new InventoryPage(products, next, size, totalPages);
+    }
+
+    /**
+     * Parse the products of a page. Elements that are no objects, e.g. {@code null}, are skipped.
+     *
+     * @param parser   parser positioned at the start of the array of products
+     * @param products receives the products
+     * @throws IOException if the array is not terminated
+     */
+    private void parseProducts(JsonParser parser, List<Product> products) throws IOException {
+        for (JsonToken element = parser.nextToken(); element != JsonToken.END_ARRAY; element = parser.nextToken()) {
+            if (element == null) {
+                throw new JsonParseException(parser, "Unexpected end of input in array of products");
+            }
+            if (element == JsonToken.START_OBJECT) {
+                products.add(parseProduct(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Parse a product. The id of the product is the last segment of the first link in the product's
+     * {@code _links}.
+     *
+     * @param parser parser positioned at the start of the product object
+     * @return the product
+     */
+    private Product parseProduct(JsonParser parser) throws IOException {
+        String id = null;
+        String name = null;
+        String description = null;
+        int units = 0;
+        double price = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if (!"_links".equals(field) && (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)) {
+                parser.skipChildren(); // not what we expected, keep the default
+                continue;
+            }
+
+            switch (field) {
+                case "name" -> name = parser.getValueAsString();
+                case "description" -> description = parser.getValueAsString();
+                case "units" -> units = parser.getValueAsInt();
+                case "price" -> price = parser.getValueAsDouble();
+                case "_links" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            parser.nextToken();
+                            String href = parseHref(parser);
+                            if (id == null && href != null) {
+                                id = getIdFromHref(href);
+                            }
+                        }
+                        expectEndOfObject(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        expectEndOfObject(parser);
+        return new Product(id, name, description, units, price);
+    }
+
+    /**
+     * Parse a link.
+     *
+     * @param parser parser positioned at the start of the link object
+     * @return the link's href, or 'null' if the link has none
+     */
+    private String parseHref(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String href = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("href".equals(field) && value.isScalarValue()) {
+                href = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        expectEndOfObject(parser);
+        return href;
+    }
+
+    /**
+     * Extracts the id under which a resource can be found from its url.
+     *
+     * @param href url of a resource
+     * @return the resources id
+     */
+    public static String getIdFromHref(String href) {
+        final String[] parts = href.split("/");
+        return parts[parts.length - 1];
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but got " + actual);
+        }
+    }
+
+    /**
+     * Make sure that the fields of an object ended because the object did, and not because the input did.
+     */
+    private static void expectEndOfObject(JsonParser parser) throws JsonParseException {
+        expect(parser, parser.currentToken(), JsonToken.END_OBJECT);
+    }
+}
@@ -0,0 +1,25 @@
+package de.unistuttgart.t2.uibackend.inventory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.unistuttgart.t2.common.Product;
+
+/**
+ * A product as the inventory (i.e. Spring Data REST) delivers it. The id is not part of the resource, but of its url.
+ * The links and everything else the inventory adds are ignored.
+ *
+ * @param name        name of the product
+ * @param description description of the product
+ * @param units       number of units in stock
+ * @param price       price per unit
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductResource(String name, String description, int units, double price) {
+
+    /**
+     * @param id id of the product, i.e. the last segment of the resource's url
+     * @return the product
+     */
+    public Product toProduct(String id) {
+        return new Product(id, name, description, units, price);
+    }
+}
@@ -0,0 +1,141 @@
+package de.unistuttgart.t2.uibackend.retry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps retries to a fraction of the requests to other services, shared by all of them.
+ * <p>
+ * Works like a token bucket. The bucket starts full. Every failed request takes one token, every successful request
+ * returns {@code tokenRatio} tokens. Retries are allowed only as long as the bucket is more than half full. Thus if the
+ * other services fail a lot, retries stop until enough requests succeed again, and in the long run there is at most one
+ * retry per {@code 1 / tokenRatio} successful requests.
+ * <p>
+ * A request failed if it did not get a response, or the response has a status of 429 or 5xx. The outcome of requests
+ * is tracked by intercepting them, either as {@link ClientHttpRequestInterceptor} for a
+ * {@link org.springframework.web.client.RestTemplate} or with {@link #asFilter()} for a
+ * {@link org.springframework.web.reactive.function.client.WebClient}.
+ */
+public class RetryBudget implements ClientHttpRequestInterceptor, MeterBinder {
+
+    // tokens are kept in thousandths, such that fractional ratios need no floating point arithmetic
+    private static final long SCALE = 1000;
+
+    private final long maxTokens;
+    private final long threshold;
+    private final long tokenRatio;
+    private final AtomicLong tokens;
+
+    private final LongAdder denied = new LongAdder();
+
+    /**
+     * Create a new retry budget.
+     *
+     * @param maxTokens  size of the bucket
+     * @param tokenRatio tokens returned for each successful request, between 0 and 1
+     */
+    public RetryBudget(int maxTokens, double tokenRatio) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("max tokens must be positive but is " + maxTokens);
+        }
+        if (tokenRatio <= 0 || tokenRatio > 1) {
+            throw new IllegalArgumentException("token ratio must be in (0, 1] but is " + tokenRatio);
+        }
+        this.maxTokens = maxTokens * SCALE;
+        this.threshold = this.maxTokens / 2;
+        this.tokenRatio = Math.round(tokenRatio * SCALE);
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    /**
+     * Check whether a failed request may be retried. Does not take any tokens, as the failure itself already took one.
+     *
+     * @return true iff the budget allows another retry
+     */
+    public boolean allowsRetry() {
+        if (tokens.get() > threshold) {
+            return true;
+        }
+        denied.increment();
+        return false;
+    }
+
+    /**
+     * Record a successful request.
+     */
+    public void onSuccess() {
+        tokens.accumulateAndGet(tokenRatio, (current, ratio) -> Math.min(maxTokens, current + ratio));
+    }
+
+    /**
+     * Record a failed request.
+     */
+    public void onFailure() {
+        tokens.accumulateAndGet(SCALE, (current, cost) -> Math.max(0, current - cost));
+    }
+
+    /**
+     * @return tokens left in the bucket
+     */
+    public double getTokens() {
+        return (double) tokens.get() / SCALE;
+    }
+
+    /**
+     * Record the outcome of a request by its status.
+     *
+     * @param status status of the response
+     */
+    private void onResponse(HttpStatusCode status) {
+        if (status.is5xxServerError() || status.value() == 429) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+        throws IOException {
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            onFailure();
+            throw e;
+        }
+        onResponse(response.getStatusCode());
+        return response;
+    }
+
+    /**
+     * @return a filter that tracks the outcome of the requests of a web client
+     */
+    public ExchangeFilterFunction asFilter() {
+        return (request, next) -> next.exchange(request)
+            .doOnNext(response -> onResponse(response.statusCode()))
+            .doOnError(e -> onFailure());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("t2.retry.budget.tokens", this, RetryBudget::getTokens)
+            .description("Tokens left in the retry budget")
+            .register(registry);
+        FunctionCounter.builder("t2.retry.budget.denied", denied, LongAdder::sum)
+            .description("Retryable failures while the retry budget was exhausted")
+            .register(registry);
+    }
+}
@@ -0,0 +1,150 @@
+package de.unistuttgart.t2.uibackend.retry;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.ConnectException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The retries for the requests to the other services, one {@link RetryPolicy} per service.
+ * <p>
+ * There are two retries per service. Idempotent requests are retried if they got no response, or a response with one
+ * of the policy's retryable statuses. Requests that are not idempotent are only retried if the other service certainly
+ * did not process them, i.e. if the connection could not be established or the response has one of the
+ * {@link RetryPolicy#UNPROCESSED_STATUSES}.
+ * <p>
+ * Either way, a request is only retried if the {@link RetryBudget} allows it.
+ */
+public class RetryPolicies implements MeterBinder {
+
+    public static final String CART = "cart";
+    public static final String INVENTORY = "inventory";
+    public static final String ORCHESTRATOR = "orchestrator";
+    public static final String COMPUTATION_SIMULATOR = "computation-simulator";
+
+    private final RetryRegistry registry = RetryRegistry.ofDefaults();
+    private final Map<String, Retry> idempotent = new HashMap<>();
+    private final Map<String, Retry> nonIdempotent = new HashMap<>();
+
+    /**
+     * Create the retries for the given services.
+     *
+     * @param policies how to retry the requests to each service, by name of the service
+     * @param budget   budget shared by all retries
+     */
+    public RetryPolicies(Map<String, RetryPolicy> policies, RetryBudget budget) {
+        policies.forEach((downstream, policy) -> {
+            idempotent.put(downstream, registry.retry(downstream,
+                config(policy, e -> isRetryable(e, policy.retryableStatuses()) && budget.allowsRetry())));
+            nonIdempotent.put(downstream, registry.retry(downstream + "-non-idempotent",
+                config(policy, e -> isUnprocessed(e) && budget.allowsRetry())));
+        });
+    }
+
+    /**
+     * @param downstream name of the service
+     * @return retry for idempotent requests to the service
+     */
+    public Retry idempotent(String downstream) {
+        return get(idempotent, downstream);
+    }
+
+    /**
+     * @param downstream name of the service
+     * @return retry for requests to the service that are not idempotent
+     */
+    public Retry nonIdempotent(String downstream) {
+        return get(nonIdempotent, downstream);
+    }
+
+    private static Retry get(Map<String, Retry> retries, String downstream) {
+        Retry retry = retries.get(downstream);
+        if (retry == null) {
+            throw new IllegalArgumentException("no retry policy for " + downstream);
+        }
+        return retry;
+    }
+
+    private static RetryConfig config(RetryPolicy policy, Predicate<Throwable> retryable) {
+        return RetryConfig.custom()
+            .maxAttempts(policy.maxAttempts())
+            .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(policy.initialBackoff(),
+                policy.multiplier(), policy.jitter(), policy.maxBackoff()))
+            .retryOnException(retryable)
+            .build();
+    }
+
+    /**
+     * Check whether a failed idempotent request is worth retrying.
+     *
+     * @param e        why the request failed
+     * @param statuses retryable statuses
+     * @return true iff the request got no response, or a response with one of the given statuses, and was not rejected
+     *     by the circuit breaker or the bulkhead
+     */
+    static boolean isRetryable(Throwable e, Set<Integer> statuses) {
+        if (isRejected(e)) {
+            return false;
+        }
+        if (e instanceof RestClientResponseException response) {
+            return statuses.contains(response.getStatusCode().value());
+        }
+        if (e instanceof WebClientResponseException response) {
+            return statuses.contains(response.getStatusCode().value());
+        }
+        return e instanceof ResourceAccessException || e instanceof WebClientRequestException;
+    }
+
+    /**
+     * Check whether a failed request certainly was not processed by the other service.
+     *
+     * @param e why the request failed
+     * @return true iff no connection was established, or the response says that the request was not processed
+     */
+    static boolean isUnprocessed(Throwable e) {
+        if (isRejected(e)) {
+            return false;
+        }
+        if (e instanceof RestClientResponseException || e instanceof WebClientResponseException) {
+            return isRetryable(e, RetryPolicy.UNPROCESSED_STATUSES);
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a request was rejected by the circuit breaker or the bulkhead of the other service. Retrying it
+     * right away would only be rejected again.
+     *
+     * @param e why the request failed
+     * @return true iff the request was rejected before it was sent
+     */
+    private static boolean isRejected(Throwable e) {
+        return e instanceof BulkheadFullException || e instanceof CallNotPermittedException;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        TaggedRetryMetrics.ofRetryRegistry(registry).bindTo(meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package de.unistuttgart.t2.uibackend.retry;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * How to retry the requests to one other service.
+ * <p>
+ * The wait before the n-th retry is {@code initialBackoff * multiplier^(n-1)}, capped at {@code maxBackoff}, and then
+ * randomly shifted by up to {@code jitter} times itself in either direction, such that clients that failed at the
+ * same time do not retry at the same time.
+ *
+ * @param maxAttempts       max number of attempts, including the first one. 1 disables retries.
+ * @param initialBackoff    wait before the first retry
+ * @param multiplier        factor by which the wait grows with each retry
+ * @param maxBackoff        max wait before a retry, before the jitter is applied
+ * @param jitter            randomization factor, between 0 (inclusive) and 1 (exclusive)
+ * @param retryableStatuses statuses of responses that are worth retrying, if the request is idempotent
+ */
+public record RetryPolicy(int maxAttempts, Duration initialBackoff, double multiplier, Duration maxBackoff,
+                          double jitter, Set<Integer> retryableStatuses) {
+
+    /**
+     * Statuses with which a service says that it did not process a request. Requests that are not idempotent are only
+     * retried on these.
+     */
+    public static final Set<Integer> UNPROCESSED_STATUSES = Set.of(429, 503);
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("max attempts must be at least 1 but is " + maxAttempts);
+        }
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter must be in [0, 1) but is " + jitter);
+        }
+        retryableStatuses = Set.copyOf(retryableStatuses);
+    }
+}
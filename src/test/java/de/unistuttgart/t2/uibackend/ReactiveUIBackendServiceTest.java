@@ -0,0 +1,157 @@
+package de.unistuttgart.t2.uibackend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
+import de.unistuttgart.t2.uibackend.exceptions.OrderNotPlacedException;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the ReactiveUIBackendService produces the same results, retries and exceptions as the
+ * UIBackendService.
+ */
+public class ReactiveUIBackendServiceTest {
+
+    private final Map<String, Queue<ClientResponse>> responses = new HashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final ReactiveUIBackendService service = new ReactiveUIBackendService(
+        WebClient.builder().exchangeFunction(request -> {
+            String key = request.method() + " " + request.url();
+            requests.add(key);
+            synchronized (responses) {
+                Queue<ClientResponse> queue = responses.get(key);
+                if (queue == null || queue.isEmpty()) {
+                    return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+                }
+                return Mono.just(queue.poll());
+            }
+        }).build(), new ObjectMapper(),
+        JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint, false, null, 4);
+
+    private void respond(HttpMethod method, String url, HttpStatus status, String body) {
+        ClientResponse.Builder response = ClientResponse.create(status);
+        if (body != null) {
+            response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).body(body);
+        }
+        synchronized (responses) {
+            responses.computeIfAbsent(method + " " + url, key -> new ArrayDeque<>()).add(response.build());
+        }
+    }
+
+    @Test
+    public void testGetProductsInCartKeepsOrder() {
+        respond(HttpMethod.GET, cartUrl + "/" + sessionId, HttpStatus.OK, cartResponseMulti());
+        respond(HttpMethod.GET, inventoryUrl + "/" + productId, HttpStatus.OK, inventoryResponse());
+        respond(HttpMethod.GET, inventoryUrl + "/" + anotherproductId, HttpStatus.OK, anotherInventoryResponse());
+
+        List<Product> products = service.getProductsInCart(sessionId).block();
+
+        assertEquals(2, products.size());
+        assertEquals(productId, products.get(0).getId());
+        assertEquals(units, products.get(0).getUnits());
+        assertEquals(anotherproductId, products.get(1).getId());
+        assertEquals(anotherunits, products.get(1).getUnits());
+    }
+
+    @Test
+    public void testGetTotal() {
+        respond(HttpMethod.GET, cartUrl + "/" + sessionId, HttpStatus.OK, cartResponseMulti());
+        respond(HttpMethod.GET, inventoryUrl + "/" + productId, HttpStatus.OK, inventoryResponse());
+        respond(HttpMethod.GET, inventoryUrl + "/" + anotherproductId, HttpStatus.OK, anotherInventoryResponse());
+
+        assertEquals(units * 1.0 + anotherunits * 1.0, service.getTotal(sessionId).block());
+    }
+
+    @Test
+    public void testGetTotalIsZeroIfProductIsMissing() {
+        respond(HttpMethod.GET, cartUrl + "/" + sessionId, HttpStatus.OK, cartResponseMulti());
+        respond(HttpMethod.GET, inventoryUrl + "/" + productId, HttpStatus.OK, inventoryResponse());
+
+        assertEquals(0.0, service.getTotal(sessionId).block());
+    }
+
+    @Test
+    public void testGetSingleProductIsRetried() {
+        respond(HttpMethod.GET, inventoryUrl + "/" + productId, HttpStatus.INTERNAL_SERVER_ERROR, null);
+        respond(HttpMethod.GET, inventoryUrl + "/" + productId, HttpStatus.OK, inventoryResponse());
+
+        Product product = service.getSingleProduct(productId).block();
+
+        assertNotNull(product);
+        assertEquals(productId, product.getId());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void testUpdateCartSkipsFailedReservation() {
+        respond(HttpMethod.POST, reservationUrl, HttpStatus.INTERNAL_SERVER_ERROR, null);
+
+        List<Product> added = service.updateCart(sessionId, Map.of(productId, 2)).block();
+
+        assertTrue(added.isEmpty());
+        // twice, because of the retry. the cart is never touched.
+        assertEquals(List.of("POST " + reservationUrl, "POST " + reservationUrl), requests);
+    }
+
+    @Test
+    public void testUpdateCartReadsAndWritesCartOnce() {
+        respond(HttpMethod.POST, reservationUrl, HttpStatus.OK, inventoryResponse());
+        respond(HttpMethod.POST, reservationUrl, HttpStatus.OK, anotherInventoryResponse());
+        respond(HttpMethod.GET, cartUrl + "/" + sessionId, HttpStatus.OK, cartResponse());
+        respond(HttpMethod.PUT, cartUrl + "/" + sessionId, HttpStatus.OK, null);
+
+        Map<String, Integer> content = new LinkedHashMap<>();
+        content.put(productId, 2);
+        content.put(anotherproductId, 3);
+        List<Product> added = service.updateCart(sessionId, content).block();
+
+        assertEquals(2, added.size());
+        assertEquals(1, requests.stream().filter(request -> request.equals("GET " + cartUrl + "/" + sessionId))
+            .count());
+        assertEquals(1, requests.stream().filter(request -> request.equals("PUT " + cartUrl + "/" + sessionId))
+            .count());
+    }
+
+    @Test
+    public void testFailedCartReadIsNotOverwritten() {
+        for (int i = 0; i < 3; i++) {
+            respond(HttpMethod.GET, cartUrl + "/" + sessionId, HttpStatus.INTERNAL_SERVER_ERROR, null);
+        }
+
+        Exception exception = assertThrows(RuntimeException.class,
+            () -> service.applyCartDelta(sessionId, Map.of(productId, 2)).block());
+
+        assertInstanceOf(CartInteractionFailedException.class, Exceptions.unwrap(exception));
+        assertTrue(requests.stream().noneMatch(request -> request.startsWith("PUT ")));
+    }
+
+    @Test
+    public void testConfirmOrderOfEmptyCartFails() {
+        Exception exception = assertThrows(RuntimeException.class,
+            () -> service.confirmOrder(sessionId, "cardNumber", "cardOwner", "checksum").block());
+
+        assertInstanceOf(OrderNotPlacedException.class, Exceptions.unwrap(exception));
+        assertTrue(requests.stream().noneMatch(request -> request.contains(orchestratorUrl)));
+    }
+}
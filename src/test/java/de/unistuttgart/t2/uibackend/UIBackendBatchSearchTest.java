@@ -0,0 +1,83 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Test whether UIBackendService retrieves many products with a single request to the inventory, and falls back to one
+ * request per product if the inventory offers no batch search.
+ */
+public class UIBackendBatchSearchTest {
+
+    private final String searchUrl = inventoryUrl + "/search/findByIdIn";
+
+    private final UIBackendService service =
+        new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint);
+
+    private MockRestServiceServer mockServer;
+
+    @BeforeEach
+    public void setUp() {
+        service.template = new RestTemplate();
+        service.setBatchSearchEndpoint("search/findByIdIn");
+        mockServer = MockRestServiceServer.createServer(service.template);
+    }
+
+    @Test
+    public void testGetProductsInCartWithBatchSearch() {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponseMulti(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(startsWith(searchUrl))).andExpect(method(HttpMethod.GET))
+            .andExpect(queryParam("ids", productId, anotherproductId))
+            .andRespond(withSuccess(inventoryResponseAllProducts(), MediaType.APPLICATION_JSON));
+
+        List<Product> products = service.getProductsInCart(sessionId);
+
+        mockServer.verify();
+        assertEquals(2, products.size());
+        assertEquals(productId, products.get(0).getId());
+        assertEquals(units, products.get(0).getUnits());
+        assertEquals(anotherproductId, products.get(1).getId());
+        assertEquals(anotherunits, products.get(1).getUnits());
+    }
+
+    @Test
+    public void testGetProductsFallsBackIfBatchSearchIsUnavailable() {
+        mockServer.expect(ExpectedCount.manyTimes(), requestTo(startsWith(searchUrl)))
+            .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl + "/" + anotherproductId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(anotherInventoryResponse(), MediaType.APPLICATION_JSON));
+
+        // execute twice, the second time without attempting the batch search
+        Map<String, Product> first = service.getProducts(List.of(productId, anotherproductId));
+        Map<String, Product> second = service.getProducts(List.of(productId, anotherproductId));
+
+        assertEquals(List.of(productId, anotherproductId), List.copyOf(first.keySet()));
+        assertEquals(List.of(productId, anotherproductId), List.copyOf(second.keySet()));
+    }
+}
@@ -0,0 +1,106 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.CartContent;
+import de.unistuttgart.t2.uibackend.cache.CartCache;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Test whether UIBackendService takes cart contents from the cache, and keeps the cache up to date with its own
+ * changes of the cart.
+ */
+public class UIBackendCartCacheTest {
+
+    private final UIBackendService service =
+        new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private MockRestServiceServer mockServer;
+
+    @BeforeEach
+    public void setUp() {
+        service.template = new RestTemplate();
+        service.cartCache = new CartCache(Duration.ofMinutes(1), 100);
+        service.cartCache.bindTo(registry);
+        mockServer = MockRestServiceServer.createServer(service.template);
+    }
+
+    @Test
+    public void testGetCartContentIsCached() {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+
+        CartContent first = service.getCartContent(sessionId).get();
+        first.getContent().put(productId, 1337); // must not change the cached content
+        CartContent second = service.getCartContent(sessionId).get();
+
+        mockServer.verify();
+        assertEquals(units, second.getUnits(productId));
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "carts").tag("result", "hit")
+            .functionCounter().count());
+    }
+
+    @Test
+    public void testChangesAreWrittenThrough() throws Exception {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andRespond(withStatus(HttpStatus.OK));
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andRespond(withStatus(HttpStatus.OK));
+
+        service.addItemToCart(sessionId, productId, 1);
+        service.deleteItemFromCart(sessionId, anotherproductId, 1);
+
+        mockServer.verify();
+        assertEquals(units + 1, service.getCartContent(sessionId).get().getUnits(productId));
+    }
+
+    @Test
+    public void testDeleteCartInvalidatesCache() throws Exception {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId))
+            .andExpect(method(HttpMethod.DELETE))
+            .andRespond(withStatus(HttpStatus.OK));
+        // twice, because of the retry
+        mockServer.expect(ExpectedCount.twice(), requestTo(cartUrl + "/" + sessionId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertTrue(service.getCartContent(sessionId).isPresent());
+        service.deleteCart(sessionId);
+        assertTrue(service.getCartContent(sessionId).isEmpty());
+        mockServer.verify();
+    }
+
+    @Test
+    public void testFailedRetrievalIsNotCached() {
+        mockServer.expect(ExpectedCount.twice(), requestTo(cartUrl + "/" + sessionId))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+
+        assertTrue(service.getCartContent(sessionId).isEmpty());
+        assertTrue(service.getCartContent(sessionId).isPresent());
+        mockServer.verify();
+    }
+}
@@ -1,7 +1,9 @@
 package de.unistuttgart.t2.uibackend;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.unistuttgart.t2.common.Product;
 import de.unistuttgart.t2.common.UpdateCartRequest;
+import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
 import de.unistuttgart.t2.uibackend.supplicants.TestContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,13 +14,17 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -49,15 +55,17 @@ public class UIBackendControllerTest {
 
     UIBackendController controller;
 
+    private final ObjectMapper mapper = new ObjectMapper();
+
     @BeforeEach
     public void setUp() {
         mockServer = MockRestServiceServer.createServer(template);
-        controller = new UIBackendController(service);
+        controller = new UIBackendController(service, mapper);
     }
 
     @Test
     public void testGetAllProducts() {
-        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
             .andRespond(withSuccess(inventoryResponseAllProducts(), MediaType.APPLICATION_JSON));
 
         List<Product> actual = controller.getAllProducts();
@@ -65,6 +73,25 @@ public class UIBackendControllerTest {
         assertEquals(2, actual.size());
     }
 
+    @Test
+    public void testStreamAllProducts() throws Exception {
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseFirstPage(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrlSecondPage)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseSecondPage(), MediaType.APPLICATION_JSON));
+
+        ResponseEntity<StreamingResponseBody> response = controller.streamAllProducts();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        mockServer.verify();
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(productId, mapper.readValue(lines[0], Product.class).getId());
+        assertEquals(anotherproductId, mapper.readValue(lines[1], Product.class).getId());
+    }
+
     @Test
     public void testGetSingleProduct() {
         mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId)).andExpect(method(HttpMethod.GET))
@@ -87,7 +114,7 @@ public class UIBackendControllerTest {
     }
 
     @Test
-    public void testDontChangeCart() {
+    public void testDontChangeCart() throws Exception {
 
         mockServer.expect(ExpectedCount.never(), requestTo(cartUrl + "/" + sessionId));
 
@@ -96,7 +123,7 @@ public class UIBackendControllerTest {
     }
 
     @Test
-    public void testAddToCart() {
+    public void testAddToCart() throws Exception {
 
         mockServer.expect(ExpectedCount.once(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
             .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
@@ -117,7 +144,7 @@ public class UIBackendControllerTest {
     }
 
     @Test
-    public void testIncreaseCart() {
+    public void testIncreaseCart() throws Exception {
 
         mockServer.expect(ExpectedCount.once(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
             .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
@@ -137,7 +164,42 @@ public class UIBackendControllerTest {
     }
 
     @Test
-    public void testDecreaseCart() {
+    public void testFailedSingleCartWriteIsReported() {
+        controller.coalesceCartUpdates = true;
+
+        mockServer.expect(ExpectedCount.once(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        UpdateCartRequest request = new UpdateCartRequest(Map.of(productId, units));
+        assertThrows(CartInteractionFailedException.class, () -> controller.updateCart(sessionId, request));
+    }
+
+    @Test
+    public void testFailedCartWriteSkipsProduct() throws Exception {
+
+        mockServer.expect(ExpectedCount.once(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        UpdateCartRequest request = new UpdateCartRequest(Map.of(productId, units));
+        List<Product> addedProducts = controller.updateCart(sessionId, request);
+
+        assertEquals(0, addedProducts.size());
+    }
+
+    @Test
+    public void testDecreaseCart() throws Exception {
 
         mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
             .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
@@ -153,7 +215,7 @@ public class UIBackendControllerTest {
     }
 
     @Test
-    public void testRemoveFromCart() {
+    public void testRemoveFromCart() throws Exception {
 
         mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
             .andRespond(withSuccess(cartResponse(), MediaType.APPLICATION_JSON));
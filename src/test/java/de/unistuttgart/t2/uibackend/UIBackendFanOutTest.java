@@ -0,0 +1,152 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.cache.ProductCatalogSnapshot;
+import de.unistuttgart.t2.uibackend.concurrent.FanOut;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Test whether UIBackendService still produces the same results if it retrieves products concurrently.
+ */
+public class UIBackendFanOutTest {
+
+    private final UIBackendService service =
+        new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint);
+
+    private MockRestServiceServer mockServer;
+
+    @BeforeEach
+    public void setUp() {
+        service.template = new RestTemplate();
+        service.fanOut = new FanOut(2, 2, Duration.ofSeconds(5));
+        // requests to the inventory are placed concurrently, thus their order is unknown.
+        mockServer = MockRestServiceServer.bindTo(service.template).ignoreExpectOrder(true).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.fanOut.destroy();
+    }
+
+    @Test
+    public void testGetProductsInCartKeepsOrder() {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponseMulti(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + anotherproductId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(anotherInventoryResponse(), MediaType.APPLICATION_JSON));
+
+        List<Product> products = service.getProductsInCart(sessionId);
+
+        mockServer.verify();
+        assertEquals(2, products.size());
+        assertEquals(productId, products.get(0).getId());
+        assertEquals(units, products.get(0).getUnits());
+        assertEquals(anotherproductId, products.get(1).getId());
+        assertEquals(anotherunits, products.get(1).getUnits());
+    }
+
+    @Test
+    public void testGetProductsInCartSkipsMissingProducts() {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponseMulti(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.manyTimes(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + anotherproductId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(anotherInventoryResponse(), MediaType.APPLICATION_JSON));
+
+        List<Product> products = service.getProductsInCart(sessionId);
+
+        assertEquals(1, products.size());
+        assertEquals(anotherproductId, products.get(0).getId());
+    }
+
+    @Test
+    public void testGetAllProductsPrefetchesPages() {
+        service.setCrawlWindow(2);
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponsePage(0, 4), MediaType.APPLICATION_JSON));
+        for (int number = 1; number < 4; number++) {
+            mockServer.expect(ExpectedCount.once(), requestTo(inventoryPageUrl(number, 1)))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(inventoryResponsePage(number, 4), MediaType.APPLICATION_JSON));
+        }
+
+        List<Product> products = service.getAllProducts();
+
+        mockServer.verify();
+        assertEquals(List.of("product-0", "product-1", "product-2", "product-3"),
+            products.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void testIncompleteCrawlKeepsLastSnapshot() {
+        service.setCrawlWindow(2);
+        ProductCatalogSnapshot snapshot = new ProductCatalogSnapshot(service::requestAllProducts, Duration.ofMinutes(1));
+
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponsePage(0, 3), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryPageUrl(2, 1))).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponsePage(2, 3), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryPageUrl(1, 1))).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponsePage(1, 3), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.manyTimes(), requestTo(inventoryPageUrl(1, 1)))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        List<String> all = List.of("product-0", "product-1", "product-2");
+        assertEquals(all, snapshot.getAllProducts().stream().map(Product::getId).toList());
+
+        // page 1 fails from now on
+        snapshot.refresh().join();
+
+        assertEquals(all, snapshot.getAllProducts().stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void testMakeReservationsConcurrently() {
+        mockServer.expect(ExpectedCount.twice(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        Map<String, Integer> unitsToAdd = new LinkedHashMap<>();
+        unitsToAdd.put(productId, 2);
+        unitsToAdd.put(anotherproductId, 3);
+        Map<String, Product> products = service.makeReservations(sessionId, unitsToAdd);
+
+        mockServer.verify();
+        assertEquals(List.of(productId, anotherproductId), List.copyOf(products.keySet()));
+        assertEquals(2, products.get(productId).getUnits());
+        assertEquals(3, products.get(anotherproductId).getUnits());
+    }
+}
@@ -0,0 +1,132 @@
+package de.unistuttgart.t2.uibackend;
+
+import de.unistuttgart.t2.common.Product;
+import de.unistuttgart.t2.uibackend.cache.ProductCache;
+import de.unistuttgart.t2.uibackend.supplicants.JSONs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Test whether UIBackendService takes products from the cache instead of asking the inventory, except for
+ * reservations.
+ */
+public class UIBackendProductCacheTest {
+
+    private final UIBackendService service =
+        new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private MockRestServiceServer mockServer;
+
+    @BeforeEach
+    public void setUp() {
+        service.template = new RestTemplate();
+        service.productCache = new ProductCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 100);
+        service.productCache.bindTo(registry);
+        mockServer = MockRestServiceServer.createServer(service.template);
+    }
+
+    @Test
+    public void testGetSingleProductIsCached() {
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        Product first = service.getSingleProduct(productId).get();
+        first.setUnits(1337); // must not change the cached product
+        Product second = service.getSingleProduct(productId).get();
+
+        mockServer.verify();
+        assertEquals(productId, second.getId());
+        assertEquals(5, second.getUnits());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "products").tag("result", "hit")
+            .functionCounter().count());
+    }
+
+    @Test
+    public void testUnknownProductIsCached() {
+        // twice, because of the retry
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl + "/" + productId))
+            .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertTrue(service.getSingleProduct(productId).isEmpty());
+        assertTrue(service.getSingleProduct(productId).isEmpty());
+        mockServer.verify();
+    }
+
+    @Test
+    public void testFailedRetrievalIsNotCached() {
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl + "/" + productId))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        assertTrue(service.getSingleProduct(productId).isEmpty());
+        assertTrue(service.getSingleProduct(productId).isPresent());
+        mockServer.verify();
+    }
+
+    @Test
+    public void testReservationBypassesAndInvalidatesCache() throws Exception {
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(reservationUrl)).andExpect(method(HttpMethod.POST))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl + "/" + productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        service.getSingleProduct(productId);
+        service.makeReservations(sessionId, productId, 2);
+        service.getSingleProduct(productId);
+        mockServer.verify();
+    }
+
+    @Test
+    public void testGetAllProductsIsCached() {
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseAllProducts(), MediaType.APPLICATION_JSON));
+
+        assertEquals(2, service.getAllProducts().size());
+        assertEquals(2, service.getAllProducts().size());
+
+        // all products are cached individually as well
+        assertTrue(service.getSingleProduct(anotherproductId).isPresent());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "catalog").tag("result", "hit")
+            .functionCounter().count());
+    }
+
+    @Test
+    public void testIncompleteCatalogIsNotCached() {
+        mockServer = MockRestServiceServer.bindTo(service.template).ignoreExpectOrder(true).build();
+        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseFirstPage(), MediaType.APPLICATION_JSON));
+        mockServer.expect(ExpectedCount.manyTimes(), requestTo(inventoryUrlSecondPage))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        // the products of the first page, but the next call asks the inventory again
+        assertEquals(1, service.getAllProducts().size());
+        assertEquals(1, service.getAllProducts().size());
+
+        mockServer.verify();
+    }
+}
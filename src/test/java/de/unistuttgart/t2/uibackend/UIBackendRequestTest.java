@@ -1,10 +1,15 @@
 package de.unistuttgart.t2.uibackend;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.t2.common.CartContent;
+import de.unistuttgart.t2.common.Product;
 import de.unistuttgart.t2.common.ReservationRequest;
 import de.unistuttgart.t2.common.SagaRequest;
+import de.unistuttgart.t2.uibackend.exceptions.CartInteractionFailedException;
 import de.unistuttgart.t2.uibackend.supplicants.JSONs;
 import de.unistuttgart.t2.uibackend.supplicants.TestContext;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,7 +24,15 @@ import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
@@ -92,6 +105,32 @@ public class UIBackendRequestTest {
         mockServer.verify();
     }
 
+    @Test
+    public void testConfirmOrderSucceedsIfCartRejectsDeletion() throws Exception {
+
+        mockServer.expect(ExpectedCount.once(), requestTo(JSONs.cartUrl + "/" + JSONs.sessionId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(JSONs.cartResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(JSONs.inventoryUrl + "/" + JSONs.productId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponse(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(JSONs.orchestratorUrl)).andExpect(method(HttpMethod.POST))
+            .andRespond(withStatus(HttpStatus.OK));
+
+        // the order is placed, but the cart's bulkhead is full
+        mockServer.expect(ExpectedCount.once(), requestTo(JSONs.cartUrl + "/" + JSONs.sessionId))
+            .andExpect(method(HttpMethod.DELETE))
+            .andRespond(request -> {
+                throw BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("cart"));
+            });
+
+        // execute
+        service.confirmOrder(JSONs.sessionId, "cardNumber", "cardOwner", "checksum");
+        mockServer.verify();
+    }
+
     @Test
     public void testGetSingleProduct() throws Exception {
 
@@ -133,8 +172,8 @@ public class UIBackendRequestTest {
     @Test
     public void testGetAllProducts() {
 
-        // twice = once for products and once for page
-        mockServer.expect(ExpectedCount.twice(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+        // once, products and next page are taken from the same response
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
             .andRespond(withSuccess(inventoryResponseAllProducts(), MediaType.APPLICATION_JSON));
 
         // execute
@@ -142,6 +181,24 @@ public class UIBackendRequestTest {
         mockServer.verify();
     }
 
+    @Test
+    public void testGetAllProductsFetchesEachPageOnce() {
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrl)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseFirstPage(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(inventoryUrlSecondPage)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(inventoryResponseSecondPage(), MediaType.APPLICATION_JSON));
+
+        // execute
+        List<Product> products = service.getAllProducts();
+        mockServer.verify();
+
+        assertEquals(2, products.size());
+        assertEquals(productId, products.get(0).getId());
+        assertEquals(anotherproductId, products.get(1).getId());
+    }
+
     @Test
     public void testAddItemToCart() throws Exception {
         mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
@@ -170,6 +227,55 @@ public class UIBackendRequestTest {
         mockServer.verify();
     }
 
+    @Test
+    public void testApplyCartDelta() throws Exception {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponseMulti(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andExpect(jsonPath("$.content." + productId).value(units + 1))
+            .andExpect(jsonPath("$.content." + anotherproductId).doesNotExist())
+            .andExpect(jsonPath("$.content.baz").value(2))
+            .andRespond(withStatus(HttpStatus.OK));
+
+        // execute
+        service.applyCartDelta(sessionId, Map.of(productId, 1, anotherproductId, -anotherunits, "baz", 2));
+        mockServer.verify();
+    }
+
+    @Test
+    public void testFailedCartReadIsNotOverwritten() {
+        mockServer.expect(ExpectedCount.manyTimes(), requestTo(cartUrl + "/" + sessionId))
+            .andExpect(method(HttpMethod.GET))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        mockServer.expect(ExpectedCount.never(), requestTo(cartUrl + "/" + sessionId))
+            .andExpect(method(HttpMethod.PUT));
+
+        assertThrows(CartInteractionFailedException.class,
+            () -> service.applyCartDelta(sessionId, Map.of(productId, 1)));
+        mockServer.verify();
+    }
+
+    @Test
+    public void testCoalescedCartDeltaFailureKeepsCause() {
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
+            .andRespond(withSuccess(cartResponseMulti(), MediaType.APPLICATION_JSON));
+
+        mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.PUT))
+            .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        service.setCoalesceCartUpdates(true);
+        try {
+            CartInteractionFailedException exception = assertThrows(CartInteractionFailedException.class,
+                () -> service.applyCartDelta(sessionId, Map.of(productId, 1)));
+            assertInstanceOf(CartInteractionFailedException.class, exception.getCause());
+        } finally {
+            service.setCoalesceCartUpdates(false);
+        }
+        mockServer.verify();
+    }
+
     @Test
     public void testGetProductsInCart() {
         mockServer.expect(ExpectedCount.once(), requestTo(cartUrl + "/" + sessionId)).andExpect(method(HttpMethod.GET))
@@ -185,4 +291,16 @@ public class UIBackendRequestTest {
         service.getProductsInCart(sessionId);
         mockServer.verify();
     }
+
+    @Test
+    public void testCalculateTotal() {
+        CartContent cart = new CartContent(Map.of(productId, 3, anotherproductId, 7));
+        Product product = new Product(productId, "name", "description", 10, 0.1);
+        Product anotherProduct = new Product(anotherproductId, "name", "description", 10, 0.7);
+
+        assertEquals(Optional.of(new BigDecimal("5.2")),
+            UIBackendService.calculateTotal(cart, Map.of(productId, product, anotherproductId, anotherProduct))
+                .map(BigDecimal::stripTrailingZeros));
+        assertEquals(Optional.empty(), UIBackendService.calculateTotal(cart, Map.of(productId, product)));
+    }
 }
@@ -1,5 +1,7 @@
 package de.unistuttgart.t2.uibackend;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import de.unistuttgart.t2.common.CartContent;
 import de.unistuttgart.t2.common.Product;
 import de.unistuttgart.t2.uibackend.supplicants.JSONs;
@@ -9,16 +11,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static de.unistuttgart.t2.uibackend.supplicants.JSONs.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 /**
  * Test whether UIBackendService handles all responses correctly.
@@ -43,11 +49,22 @@ public class UIBackendResponseTest {
     private final UIBackendService service =
         new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl, JSONs.reservationEndpoint);
 
+    /**
+     * Mock the response to a get request. The response is read from its stream.
+     *
+     * @param url  url of the get request
+     * @param body body of the response
+     */
+    private void respondWith(String url, String body) {
+        MockClientHttpResponse response =
+            new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+        Mockito.when(template.execute(eq(url), eq(HttpMethod.GET), any(), any()))
+            .thenAnswer(invocation -> invocation.<ResponseExtractor<?>> getArgument(3).extractData(response));
+    }
+
     @Test
     public void getCartContentTest() {
-        ResponseEntity<String> entity = new ResponseEntity<>(JSONs.cartResponse(), new HttpHeaders(), HttpStatus.OK);
-
-        Mockito.when(template.getForEntity(JSONs.cartUrl + "/" + JSONs.sessionId, String.class)).thenReturn(entity);
+        respondWith(JSONs.cartUrl + "/" + JSONs.sessionId, JSONs.cartResponse());
 
         CartContent products = service.getCartContent(JSONs.sessionId).get();
 
@@ -61,14 +78,10 @@ public class UIBackendResponseTest {
     @Test
     public void getProductsInCartTest() {
         // setup cart responses
-        ResponseEntity<String> cartEntity =
-            new ResponseEntity<>(JSONs.cartResponse(), new HttpHeaders(), HttpStatus.OK);
-        Mockito.when(template.getForEntity(JSONs.cartUrl + "/" + JSONs.sessionId, String.class)).thenReturn(cartEntity);
+        respondWith(JSONs.cartUrl + "/" + JSONs.sessionId, JSONs.cartResponse());
 
         // setup inventory response
-        ResponseEntity<String> inventoryEntity = new ResponseEntity<>(JSONs.inventoryResponse(), HttpStatus.OK);
-        Mockito.when(template.getForEntity(JSONs.inventoryUrl + "/" + JSONs.productId, String.class))
-            .thenReturn(inventoryEntity);
+        respondWith(JSONs.inventoryUrl + "/" + JSONs.productId, JSONs.inventoryResponse());
 
         // execute
         List<Product> products = service.getProductsInCart(JSONs.sessionId);
@@ -85,8 +98,7 @@ public class UIBackendResponseTest {
     @Test
     public void getSingleProductTest() {
         // setup inventory responses
-        ResponseEntity<String> entity = new ResponseEntity<>(inventoryResponse(), HttpStatus.OK);
-        Mockito.when(template.getForEntity(JSONs.inventoryUrl + "/" + JSONs.productId, String.class)).thenReturn(entity);
+        respondWith(JSONs.inventoryUrl + "/" + JSONs.productId, inventoryResponse());
 
         // execute
         Product product = service.getSingleProduct(JSONs.productId).get();
@@ -100,12 +112,35 @@ public class UIBackendResponseTest {
         assertEquals(1.0, product.getPrice());
     }
 
+    @Test
+    public void getSingleProductAndCartWithBlackbirdTest() {
+        UIBackendService service = new UIBackendService(JSONs.cartUrl, JSONs.inventoryUrl, JSONs.orchestratorUrl,
+            JSONs.reservationEndpoint, false, null, new ObjectMapper().registerModule(new BlackbirdModule()));
+        service.template = template;
+
+        // setup responses
+        respondWith(JSONs.inventoryUrl + "/" + JSONs.productId, inventoryResponse());
+        respondWith(JSONs.cartUrl + "/" + JSONs.sessionId, cartResponseMulti());
+
+        // execute
+        Product product = service.getSingleProduct(JSONs.productId).get();
+        CartContent cart = service.getCartContent(JSONs.sessionId).get();
+
+        // assert
+        assertEquals(JSONs.productId, product.getId());
+        assertEquals("name", product.getName());
+        assertEquals(1.0, product.getPrice());
+        assertEquals(units, cart.getUnits(productId));
+        assertEquals(anotherunits, cart.getUnits(anotherproductId));
+    }
+
     @Test
     public void getAllProductsTest() {
-        // setup inventory responses
-        ResponseEntity<String> entity = new ResponseEntity<>(inventoryResponseAllProducts(), HttpStatus.OK);
-        Mockito.when(template.getForEntity(JSONs.inventoryUrl, String.class)) // no id, we want ALL.
-            .thenReturn(entity);
+        // setup inventory responses, the page is read from the response stream.
+        MockClientHttpResponse response =
+            new MockClientHttpResponse(inventoryResponseAllProducts().getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+        Mockito.when(template.execute(eq(JSONs.inventoryUrl), eq(HttpMethod.GET), any(), any())) // no id, we want ALL.
+            .thenAnswer(invocation -> invocation.<ResponseExtractor<?>> getArgument(3).extractData(response));
 
         // execute
         List<Product> products = service.getAllProducts();
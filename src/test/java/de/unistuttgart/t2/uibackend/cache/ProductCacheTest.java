@@ -0,0 +1,51 @@
+package de.unistuttgart.t2.uibackend.cache;
+
+import de.unistuttgart.t2.common.Product;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link ProductCache} retrieves the catalog only once for concurrent callers.
+ */
+public class ProductCacheTest {
+
+    private final List<Product> products = List.of(new Product("foo", "name", "description", 5, 1.0));
+
+    @Test
+    public void testConcurrentCallersShareOneRetrieval() throws Exception {
+        ProductCache cache = new ProductCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 100);
+        AtomicInteger retrievals = new AtomicInteger();
+        CountDownLatch retrievalStarted = new CountDownLatch(1);
+        CountDownLatch finishRetrieval = new CountDownLatch(1);
+
+        List<CompletableFuture<List<Product>>> callers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> cache.getCatalog(() -> {
+                retrievals.incrementAndGet();
+                retrievalStarted.countDown();
+                try {
+                    finishRetrieval.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return products;
+            })));
+        }
+        assertTrue(retrievalStarted.await(5, TimeUnit.SECONDS));
+        finishRetrieval.countDown();
+
+        for (CompletableFuture<List<Product>> caller : callers) {
+            assertEquals("foo", caller.get(5, TimeUnit.SECONDS).get(0).getId());
+        }
+        assertEquals(1, retrievals.get());
+    }
+}
@@ -0,0 +1,81 @@
+package de.unistuttgart.t2.uibackend.cache;
+
+import de.unistuttgart.t2.common.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link ProductCatalogSnapshot} shares crawls and keeps the last good snapshot.
+ */
+public class ProductCatalogSnapshotTest {
+
+    private final List<Product> products = List.of(new Product("foo", "name", "description", 5, 1.0));
+
+    @Test
+    public void testConcurrentCallersShareOneCrawl() throws Exception {
+        AtomicInteger crawls = new AtomicInteger();
+        CountDownLatch crawlStarted = new CountDownLatch(1);
+        CountDownLatch finishCrawl = new CountDownLatch(1);
+
+        ProductCatalogSnapshot snapshot = new ProductCatalogSnapshot(() -> {
+            crawls.incrementAndGet();
+            crawlStarted.countDown();
+            try {
+                finishCrawl.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return products;
+        }, Duration.ofMinutes(1));
+
+        List<CompletableFuture<List<Product>>> callers = new ArrayList<>();
+        callers.add(CompletableFuture.supplyAsync(snapshot::getAllProducts));
+        assertTrue(crawlStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            callers.add(CompletableFuture.supplyAsync(snapshot::getAllProducts));
+        }
+        finishCrawl.countDown();
+
+        for (CompletableFuture<List<Product>> caller : callers) {
+            assertEquals(products, caller.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, crawls.get());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsLastSnapshot() {
+        AtomicInteger crawls = new AtomicInteger();
+        ProductCatalogSnapshot snapshot = new ProductCatalogSnapshot(() -> {
+            if (crawls.getAndIncrement() == 0) {
+                return products;
+            }
+            return List.of();
+        }, Duration.ofMinutes(1));
+
+        assertEquals(products, snapshot.getAllProducts());
+        snapshot.refresh().join();
+        assertEquals(products, snapshot.getAllProducts());
+        assertEquals(2, crawls.get());
+    }
+
+    @Test
+    public void testSnapshotAgeIsMeasured() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProductCatalogSnapshot snapshot = new ProductCatalogSnapshot(() -> products, Duration.ofMinutes(1));
+        snapshot.bindTo(registry);
+
+        assertTrue(registry.get("t2.products.snapshot.age").timeGauge().value(TimeUnit.NANOSECONDS) < 0);
+        snapshot.getAllProducts();
+        assertTrue(registry.get("t2.products.snapshot.age").timeGauge().value(TimeUnit.NANOSECONDS) >= 0);
+    }
+}
@@ -0,0 +1,100 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether {@link BackgroundTasks} runs tasks in the background, and makes the submitter wait once it is full.
+ */
+public class BackgroundTasksTest {
+
+    private final BackgroundTasks tasks = new BackgroundTasks("test", 1, 1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        tasks.destroy();
+    }
+
+    @Test
+    public void testTasksRunInBackground() throws Exception {
+        tasks.bindTo(registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        tasks.submit("delete-cart", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        // submit returned although the task is still blocked
+        assertEquals(1, done.getCount());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        tasks.destroy();
+        assertEquals(1, registry.get("t2.background-tasks.duration").tag("name", "test").tag("task", "delete-cart")
+            .timer().count());
+    }
+
+    @Test
+    public void testSubmitterRunsTaskIfFull() throws Exception {
+        tasks.bindTo(registry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        tasks.submit("blocked", blocked);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        tasks.submit("queued", () -> {});
+        assertEquals(1.0, registry.get("t2.background-tasks.queued").gauge().value());
+
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        tasks.submit("overflow", () -> runner.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), runner.get());
+        assertEquals(1, tasks.getRanBySubmitter());
+
+        release.countDown();
+    }
+
+    @Test
+    public void testSubmitterRunsTaskAfterShutdown() throws Exception {
+        tasks.destroy();
+
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        tasks.submit("late", () -> runner.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), runner.get());
+        assertEquals(1, tasks.getRanBySubmitter());
+    }
+
+    @Test
+    public void testFailedTaskDoesNotStopOthers() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        tasks.submit("failing", () -> {
+            throw new IllegalStateException("cart not available");
+        });
+        tasks.submit("next", done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,71 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link Coalescer} merges concurrent writes for the same key, and forgets idle keys.
+ */
+public class CoalescerTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void testWritesDuringBatchAreMerged() throws Exception {
+        Coalescer<String> coalescer = new Coalescer<>((key, writes) -> {
+            batches.add(writes);
+            writing.countDown();
+            release.await();
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.supplyAsync(() -> coalescer.submit("cart", "a"))
+            .thenCompose(future -> future);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // the first batch is in progress, thus these two are queued
+        CompletableFuture<Void> second = coalescer.submit("cart", "b");
+        CompletableFuture<Void> third = coalescer.submit("cart", "c");
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        release.countDown();
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("a"), List.of("b", "c")), batches);
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testFailedBatchFailsAllWrites() {
+        Coalescer<String> coalescer = new Coalescer<>((key, writes) -> {
+            throw new IllegalStateException("cart not available");
+        });
+
+        CompletableFuture<Void> future = coalescer.submit("cart", "a");
+
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void testKeysAreIndependent() {
+        Coalescer<String> coalescer = new Coalescer<>((key, writes) -> batches.add(writes));
+
+        coalescer.submit("cart", "a").join();
+        coalescer.submit("another cart", "b").join();
+
+        assertEquals(List.of(List.of("a"), List.of("b")), batches);
+        assertEquals(0, coalescer.size());
+    }
+}
@@ -0,0 +1,86 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link FanOut} interrupts lookups that miss the deadline, and rejects lookups once it is saturated.
+ */
+public class FanOutTest {
+
+    private final FanOut fanOut = new FanOut(1, 1, Duration.ofMillis(200));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() {
+        fanOut.destroy();
+    }
+
+    @Test
+    public void testLateLookupIsInterrupted() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        List<Optional<String>> results = fanOut.map(List.of("a", "b"), input -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Optional.of(input);
+        });
+
+        assertEquals(List.of(Optional.empty(), Optional.empty()), results);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSaturatedFanOutRejects() {
+        fanOut.bindTo(registry);
+
+        // one lookup runs, one waits in the queue, the third one is rejected
+        List<Optional<String>> results = fanOut.map(List.of("a", "b", "c"), input -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of(input);
+        });
+
+        assertEquals(Optional.of("a"), results.get(0));
+        assertEquals(Optional.empty(), results.get(2));
+        assertEquals(1, fanOut.getRejected());
+        assertEquals(1.0, registry.get("t2.fan-out.rejected").functionCounter().count());
+    }
+
+    @Test
+    public void testCallsRunToCompletion() {
+        fanOut.bindTo(registry);
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        // one call runs, one waits in the queue, the third one is run by the caller. all of them outlast the deadline.
+        List<Optional<String>> results = fanOut.mapToCompletion(List.of("a", "b", "c"), input -> {
+            threads.add(Thread.currentThread());
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                return Optional.empty();
+            }
+            return Optional.of(input);
+        });
+
+        assertEquals(List.of(Optional.of("a"), Optional.of("b"), Optional.of("c")), results);
+        assertTrue(threads.contains(Thread.currentThread()));
+        assertEquals(0, fanOut.getRejected());
+    }
+}
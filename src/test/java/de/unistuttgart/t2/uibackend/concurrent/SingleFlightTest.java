@@ -0,0 +1,93 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link SingleFlight} collapses concurrent calls for the same key, and only those.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("products");
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch calling = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private String slowCall() {
+        calls.incrementAndGet();
+        calling.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "product";
+    }
+
+    @Test
+    public void testConcurrentCallsAreCollapsed() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        singleFlight.bindTo(registry);
+
+        CompletableFuture<String> first =
+            CompletableFuture.supplyAsync(() -> singleFlight.execute("id", this::slowCall));
+        assertTrue(calling.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> second =
+            CompletableFuture.supplyAsync(() -> singleFlight.execute("id", this::slowCall));
+        // wait until the second caller waits for the first call
+        while (singleFlight.getCollapsed() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals("product", first.get(5, TimeUnit.SECONDS));
+        assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1.0, registry.get("t2.single-flight.collapsed").tag("name", "products").functionCounter().count());
+        assertEquals(0.0, registry.get("t2.single-flight.in-flight").gauge().value());
+    }
+
+    @Test
+    public void testErrorIsShared() throws Exception {
+        IllegalStateException failure = new IllegalStateException("inventory not available");
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("id", () -> {
+            calling.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw failure;
+        }));
+        assertTrue(calling.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> second =
+            CompletableFuture.supplyAsync(() -> singleFlight.execute("id", this::slowCall));
+        while (singleFlight.getCollapsed() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testSequentialCallsAreNotCollapsed() {
+        assertEquals("a", singleFlight.execute("id", () -> "a"));
+        assertEquals("b", singleFlight.execute("id", () -> "b"));
+        assertEquals("c", singleFlight.execute("another id", () -> "c"));
+        assertEquals(0, singleFlight.getCollapsed());
+    }
+}
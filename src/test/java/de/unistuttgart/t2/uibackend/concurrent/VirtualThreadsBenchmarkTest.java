@@ -0,0 +1,117 @@
+package de.unistuttgart.t2.uibackend.concurrent;
+
+import com.sun.net.httpserver.HttpServer;
+import de.unistuttgart.t2.uibackend.http.ConcurrencyLimitingInterceptor;
+import de.unistuttgart.t2.uibackend.http.PooledClientHttpRequestFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the throughput of blocking requests to a slow downstream service on a pool of platform threads, the way
+ * Tomcat handles requests by default, with the throughput on virtual threads.
+ * <p>
+ * Only runs if enabled with {@code -Dt2.benchmark=true}, e.g.
+ * {@code mvn test -Dt2.benchmark=true -Dtest=VirtualThreadsBenchmarkTest}. The virtual threads part requires Java 21.
+ */
+@EnabledIfSystemProperty(named = "t2.benchmark", matches = "true")
+public class VirtualThreadsBenchmarkTest {
+
+    private static final int REQUESTS = 4000;
+    private static final int PLATFORM_THREADS = 32;
+    private static final int MAX_CONCURRENT_REQUESTS = 200;
+    private static final long DOWNSTREAM_LATENCY_MILLIS = 20;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(DOWNSTREAM_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/inventory";
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void compareThroughput() throws Exception {
+        double platform = measure(Executors.newFixedThreadPool(PLATFORM_THREADS));
+        System.out.printf("platform threads (%d): %.0f requests/s%n", PLATFORM_THREADS, platform);
+
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads require Java 21.");
+
+        double virtual = measure(VirtualThreads.newExecutor("benchmark-"));
+        System.out.printf("virtual threads (max %d in flight): %.0f requests/s%n", MAX_CONCURRENT_REQUESTS, virtual);
+    }
+
+    /**
+     * Place {@link #REQUESTS} requests on the given executor, each blocking until its response arrives.
+     *
+     * @param executor executor to place the requests on, shut down afterwards
+     * @return requests per second
+     */
+    private double measure(ExecutorService executor) throws Exception {
+        PooledClientHttpRequestFactory factory = new PooledClientHttpRequestFactory(MAX_CONCURRENT_REQUESTS,
+            Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(10), Duration.ofSeconds(10),
+            List.of(new PooledClientHttpRequestFactory.Downstream("inventory", URI.create(url),
+                MAX_CONCURRENT_REQUESTS, null)));
+        RestTemplate template = new RestTemplate(factory);
+        template.getInterceptors().add(new ConcurrencyLimitingInterceptor(MAX_CONCURRENT_REQUESTS,
+            Duration.ofSeconds(10)));
+
+        try {
+            run(executor, template, REQUESTS / 10); // warm up
+
+            long start = System.nanoTime();
+            run(executor, template, REQUESTS);
+            return REQUESTS / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdownNow();
+            factory.destroy();
+        }
+    }
+
+    private void run(ExecutorService executor, RestTemplate template, int requests) throws Exception {
+        List<Future<String>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            responses.add(executor.submit(() -> template.getForObject(url, String.class)));
+        }
+        for (Future<String> response : responses) {
+            assertEquals("ok", response.get());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link ClientRequestMetrics} tag the requests with the service, the operation, the status and the
+ * attempt.
+ */
+public class ClientRequestMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ClientRequestMetrics metrics = new ClientRequestMetrics(registry, downstreams());
+
+    private static Map<String, String> downstreams() {
+        Map<String, String> downstreams = new LinkedHashMap<>();
+        downstreams.put("cart", "http://localhost:8080/cart");
+        downstreams.put("inventory", "http://localhost:8082/inventory");
+        return downstreams;
+    }
+
+    private static MockClientHttpRequest request(String url) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create(url));
+    }
+
+    private static ClientHttpRequestExecution respondWith(HttpStatus status) {
+        return (request, body) -> new MockClientHttpResponse(new byte[0], status);
+    }
+
+    private long count(String downstream, String operation, String status, String attempt) {
+        Timer timer = registry.find(ClientRequestMetrics.METRIC).tag("downstream", downstream)
+            .tag("operation", operation).tag("status", status).tag("attempt", attempt).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void testAttemptsWithinOperation() throws Exception {
+        try (ClientRequestMetrics.Operation ignored = ClientRequestMetrics.operation("getCartContent")) {
+            metrics.intercept(request("http://localhost:8080/cart/foo"), new byte[0],
+                respondWith(HttpStatus.SERVICE_UNAVAILABLE));
+            metrics.intercept(request("http://localhost:8080/cart/foo"), new byte[0], respondWith(HttpStatus.OK));
+        }
+
+        assertEquals(1, count("cart", "getCartContent", "503", "1"));
+        assertEquals(1, count("cart", "getCartContent", "200", "2"));
+
+        // the next operation starts over
+        try (ClientRequestMetrics.Operation ignored = ClientRequestMetrics.operation("getCartContent")) {
+            metrics.intercept(request("http://localhost:8080/cart/foo"), new byte[0], respondWith(HttpStatus.OK));
+        }
+        assertEquals(1, count("cart", "getCartContent", "200", "1"));
+    }
+
+    @Test
+    public void testNestedOperations() throws Exception {
+        try (ClientRequestMetrics.Operation ignored = ClientRequestMetrics.operation("getTotal")) {
+            try (ClientRequestMetrics.Operation alsoIgnored = ClientRequestMetrics.operation("getSingleProduct")) {
+                metrics.intercept(request("http://localhost:8082/inventory/foo"), new byte[0],
+                    respondWith(HttpStatus.OK));
+            }
+            metrics.intercept(request("http://localhost:8080/cart/foo"), new byte[0], respondWith(HttpStatus.OK));
+        }
+
+        assertEquals(1, count("inventory", "getSingleProduct", "200", "1"));
+        assertEquals(1, count("cart", "getTotal", "200", "1"));
+    }
+
+    @Test
+    public void testFailedRequests() {
+        assertThrows(BulkheadFullException.class, () -> metrics.intercept(
+            request("http://localhost:8082/inventory/foo"), new byte[0], (request, body) -> {
+                throw BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("inventory"));
+            }));
+        assertThrows(IOException.class, () -> metrics.intercept(
+            request("http://localhost:9999/other"), new byte[0], (request, body) -> {
+                throw new ConnectException("refused");
+            }));
+
+        assertEquals(1, count("inventory", ClientRequestMetrics.UNKNOWN, "REJECTED", "1"));
+        assertEquals(1, count(ClientRequestMetrics.UNKNOWN, ClientRequestMetrics.UNKNOWN, "IO_ERROR", "1"));
+    }
+}
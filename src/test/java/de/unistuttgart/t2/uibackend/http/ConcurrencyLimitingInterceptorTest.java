@@ -0,0 +1,61 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link ConcurrencyLimitingInterceptor} holds back requests beyond its limit.
+ */
+public class ConcurrencyLimitingInterceptorTest {
+
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+        URI.create("http://localhost/inventory"));
+
+    @Test
+    public void testRequestBeyondLimitFails() throws Exception {
+        ConcurrencyLimitingInterceptor interceptor = new ConcurrencyLimitingInterceptor(1, Duration.ofMillis(50));
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                interceptor.intercept(request, new byte[0], (req, body) -> {
+                    inFlight.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                });
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+        assertEquals(1, interceptor.getInFlight());
+        assertThrows(IOException.class, () -> interceptor.intercept(request, new byte[0],
+            (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK)));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        // the permit is released again
+        assertEquals(0, interceptor.getInFlight());
+        assertEquals(HttpStatus.OK, interceptor.intercept(request, new byte[0],
+            (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK)).getStatusCode());
+    }
+}
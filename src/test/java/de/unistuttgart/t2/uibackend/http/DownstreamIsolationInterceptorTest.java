@@ -0,0 +1,145 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link DownstreamIsolationInterceptor} rejects requests to a service whose circuit is open or whose
+ * bulkhead is full, without affecting the other services.
+ */
+public class DownstreamIsolationInterceptorTest {
+
+    private final DownstreamIsolationInterceptor interceptor = new DownstreamIsolationInterceptor(List.of(
+        downstream("inventory", "http://localhost:8082/inventory"),
+        downstream("reservation", "http://localhost:8082/inventory/reservation"),
+        downstream("cart", "http://localhost:8080/cart")));
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    private static DownstreamIsolationInterceptor.Downstream downstream(String name, String url) {
+        return new DownstreamIsolationInterceptor.Downstream(name, url, 50, Duration.ofSeconds(1), 100, 4, 4,
+            Duration.ofMinutes(1), 1, Duration.ofMillis(10));
+    }
+
+    private static MockClientHttpRequest request(String url) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create(url));
+    }
+
+    private ClientHttpRequestExecution respondWith(HttpStatus status) {
+        return (request, body) -> {
+            sent.incrementAndGet();
+            return new MockClientHttpResponse(new byte[0], status);
+        };
+    }
+
+    @Test
+    public void testOpenCircuitFailsFast() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            interceptor.intercept(request("http://localhost:8082/inventory/foo"), new byte[0],
+                respondWith(HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+        assertEquals(CircuitBreaker.State.OPEN,
+            interceptor.getCircuitBreakers().circuitBreaker("inventory").getState());
+
+        assertThrows(CallNotPermittedException.class, () -> interceptor
+            .intercept(request("http://localhost:8082/inventory/foo"), new byte[0], respondWith(HttpStatus.OK)));
+        assertEquals(4, sent.get());
+
+        // other services are not affected, not even those on the same host
+        assertEquals(HttpStatus.OK, interceptor.intercept(request("http://localhost:8080/cart/foo"), new byte[0],
+            respondWith(HttpStatus.OK)).getStatusCode());
+        assertEquals(HttpStatus.OK, interceptor.intercept(request("http://localhost:8082/inventory/reservation"),
+            new byte[0], respondWith(HttpStatus.OK)).getStatusCode());
+
+        assertEquals(CircuitBreakersHealthIndicator.CIRCUIT_OPEN,
+            new CircuitBreakersHealthIndicator(interceptor.getCircuitBreakers()).health().getStatus());
+    }
+
+    @Test
+    public void testRejectionsAreNotReportedAsFailedRequests() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            interceptor.intercept(request("http://localhost:8082/inventory/foo"), new byte[0],
+                respondWith(HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+        RestTemplate template = new RestTemplate();
+        template.getInterceptors().add(interceptor);
+        MockRestServiceServer.createServer(template);
+
+        // not wrapped into a ResourceAccessException, such that callers that expect failed requests do not catch it
+        assertThrows(CallNotPermittedException.class,
+            () -> template.getForObject("http://localhost:8082/inventory/foo", String.class));
+    }
+
+    @Test
+    public void testClientErrorsDoNotOpenCircuit() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            interceptor.intercept(request("http://localhost:8082/inventory/foo"), new byte[0],
+                respondWith(HttpStatus.NOT_FOUND));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED,
+            interceptor.getCircuitBreakers().circuitBreaker("inventory").getState());
+        assertEquals(Status.UP, new CircuitBreakersHealthIndicator(interceptor.getCircuitBreakers()).health()
+            .getStatus());
+    }
+
+    @Test
+    public void testFullBulkheadFailsFast() throws Exception {
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                interceptor.intercept(request("http://localhost:8080/cart/foo"), new byte[0], (req, body) -> {
+                    inFlight.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                });
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+        assertThrows(BulkheadFullException.class, () -> interceptor
+            .intercept(request("http://localhost:8080/cart/bar"), new byte[0], respondWith(HttpStatus.OK)));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        // the permit is released again
+        assertEquals(HttpStatus.OK, interceptor.intercept(request("http://localhost:8080/cart/bar"), new byte[0],
+            respondWith(HttpStatus.OK)).getStatusCode());
+    }
+
+    @Test
+    public void testOtherUrlsPass() throws Exception {
+        assertEquals(HttpStatus.OK, interceptor.intercept(request("http://localhost:9999/other"), new byte[0],
+            respondWith(HttpStatus.OK)).getStatusCode());
+        assertEquals(1, sent.get());
+    }
+}
@@ -0,0 +1,88 @@
+package de.unistuttgart.t2.uibackend.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test whether the {@link PooledClientHttpRequestFactory} applies the settings of each downstream service.
+ */
+public class PooledClientHttpRequestFactoryTest {
+
+    private HttpServer server;
+    private PooledClientHttpRequestFactory factory;
+    private String fastUrl;
+    private String slowUrl;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        String base = "http://localhost:" + server.getAddress().getPort();
+        fastUrl = base + "/fast";
+        slowUrl = base + "/slow";
+
+        // both share host and port, thus the settings of the last one apply
+        factory = new PooledClientHttpRequestFactory(10, Duration.ofSeconds(30), Duration.ofSeconds(1),
+            Duration.ofSeconds(5), Duration.ofSeconds(1), List.of(
+                new PooledClientHttpRequestFactory.Downstream("cart", URI.create(base + "/cart"), 3, null),
+                new PooledClientHttpRequestFactory.Downstream("inventory", URI.create(base + "/inventory"), 4,
+                    Duration.ofMillis(200))));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        factory.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void testReadTimeoutOfDownstreamApplies() {
+        RestTemplate template = new RestTemplate(factory);
+
+        assertEquals("ok", template.getForObject(fastUrl, String.class));
+        assertThrows(ResourceAccessException.class, () -> template.getForObject(slowUrl, String.class));
+    }
+
+    @Test
+    public void testPoolIsMeasured() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        factory.bindTo(registry);
+
+        new RestTemplate(factory).getForObject(fastUrl, String.class);
+
+        assertEquals(10, registry.get("t2.http.pool.max").tag("downstream", "all").gauge().value());
+        assertEquals(4, registry.get("t2.http.pool.max").tag("downstream", "inventory").gauge().value());
+        assertEquals(0, registry.get("t2.http.pool.connections").tag("downstream", "all").tag("state", "leased")
+            .gauge().value());
+        assertEquals(1, registry.get("t2.http.pool.connections").tag("downstream", "all").tag("state", "available")
+            .gauge().value());
+    }
+}
@@ -0,0 +1,72 @@
+package de.unistuttgart.t2.uibackend.inventory;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link InventoryPageParser} reads all products of a page, even if the array of products holds
+ * other elements as well.
+ */
+public class InventoryPageParserTest {
+
+    private final InventoryPageParser parser = new InventoryPageParser();
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String product(String id) {
+        return "{\"name\":\"name\",\"units\":5,\"price\":1.0,"
+            + "\"_links\":{\"self\":{\"href\":\"http://localhost:8082/inventory/" + id + "\"}}}";
+    }
+
+    @Test
+    public void testNonObjectElementsAreSkipped() throws IOException {
+        InventoryPage page = parser.parse(body("{\"_embedded\":{\"inventory\":[" + product("foo")
+            + ",null,42,[1,2]," + product("bar") + "]},\"page\":{\"size\":20,\"totalPages\":1}}"));
+
+        assertEquals(2, page.products().size());
+        assertEquals("foo", page.products().get(0).getId());
+        assertEquals("bar", page.products().get(1).getId());
+        assertEquals(1, page.totalPages());
+    }
+
+    @Test
+    public void testUnterminatedArrayIsRejected() {
+        assertThrows(JsonParseException.class,
+            () -> parser.parse(body("{\"_embedded\":{\"inventory\":[" + product("foo") + ",")));
+    }
+
+    @Test
+    public void testTruncatedPageIsRejected() {
+        // ends right after the products, before the link to the next page
+        assertThrows(JsonParseException.class,
+            () -> parser.parse(body("{\"_embedded\":{\"inventory\":[" + product("foo") + "]}")));
+        assertThrows(JsonParseException.class,
+            () -> parser.parse(body("{\"_embedded\":{\"inventory\":[" + product("foo") + "]")));
+        assertThrows(JsonParseException.class,
+            () -> parser.parse(body("{\"_links\":{\"next\":{\"href\":\"http://localhost:8082/inventory?page=1\"")));
+        assertThrows(JsonParseException.class,
+            () -> parser.parse(body("{\"page\":{\"size\":20")));
+    }
+
+    @Test
+    public void testUnexpectedStructuresAreSkipped() throws IOException {
+        InventoryPage page = parser.parse(body("{\"_embedded\":{\"inventory\":[{\"name\":{\"de\":\"name\"},"
+            + "\"units\":[5],\"price\":1.0,\"_links\":{\"self\":{\"href\":\"http://localhost:8082/inventory/foo\"}}}]},"
+            + "\"page\":{\"size\":20,\"totalPages\":1}}"));
+
+        assertEquals(1, page.products().size());
+        assertNull(page.products().get(0).getName());
+        assertEquals(0, page.products().get(0).getUnits());
+        assertEquals(1.0, page.products().get(0).getPrice());
+        assertEquals("foo", page.products().get(0).getId());
+    }
+}
@@ -0,0 +1,68 @@
+package de.unistuttgart.t2.uibackend.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution of the latency of a stubbed service.
+ */
+@FunctionalInterface
+public interface Latency {
+
+    /**
+     * @param random source of randomness
+     * @return latency of the next response, in milliseconds
+     */
+    long nextMillis(Random random);
+
+    /**
+     * @return no latency at all
+     */
+    static Latency none() {
+        return random -> 0;
+    }
+
+    /**
+     * @param latency latency of every response
+     * @return the same latency for every response
+     */
+    static Latency fixed(Duration latency) {
+        return random -> latency.toMillis();
+    }
+
+    /**
+     * Log-normal latency, i.e. most responses are about as fast as the median, with a long tail of slow ones. This is
+     * how the latency of real services tends to be distributed.
+     *
+     * @param median latency of half of the responses
+     * @param p99    latency of 99 percent of the responses, must not be less than the median
+     * @return log-normal latency with the given median and 99th percentile
+     */
+    static Latency logNormal(Duration median, Duration p99) {
+        if (p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException(
+                String.format("p99 %s must not be less than median %s.", p99, median));
+        }
+        // 2.326 is the 99th percentile of the standard normal distribution
+        double mu = Math.log(Math.max(1, median.toMillis()));
+        double sigma = (Math.log(Math.max(1, p99.toMillis())) - mu) / 2.326;
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Parse a latency from a string, either a single duration like {@code 20ms}, or the median and the 99th percentile
+     * of a log-normal latency like {@code 20ms,200ms}.
+     *
+     * @param latency the latency as string
+     * @return the parsed latency
+     */
+    static Latency parse(String latency) {
+        String[] parts = latency.split(",");
+        if (parts.length == 1) {
+            return fixed(DurationStyle.detectAndParse(parts[0]));
+        }
+        return logNormal(DurationStyle.detectAndParse(parts[0]), DurationStyle.detectAndParse(parts[1]));
+    }
+}
@@ -0,0 +1,153 @@
+package de.unistuttgart.t2.uibackend.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for another service during load tests, on a local port.
+ * <p>
+ * Every response is delayed according to the stub's {@link Latency}. A share of the requests, given by the stub's
+ * error rate, fails with 503 instead of being handled.
+ */
+public class StubService implements AutoCloseable {
+
+    private final String name;
+    private final Latency latency;
+    private final double errorRate;
+    private final Handler handler;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Create and start a new stub.
+     *
+     * @param name      name of the stubbed service, e.g. cart
+     * @param latency   latency of the responses
+     * @param errorRate share of the requests that fail with 503, between 0 and 1
+     * @param handler   handles the requests that do not fail
+     * @throws IOException if the stub cannot be started
+     */
+    public StubService(String name, Latency latency, double errorRate, Handler handler) throws IOException {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException(String.format("error rate must be between 0 and 1 but is %f", errorRate));
+        }
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.handler = handler;
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Random random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(latency.nextMillis(random));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Response response;
+        if (random.nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            response = new Response(503, "");
+        } else {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            response = handler.handle(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                exchange.getRequestURI().getQuery(), body);
+        }
+
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @param path path on the stub, starting with a slash
+     * @return url of the path on the stub
+     */
+    public String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return name of the stubbed service
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of requests the stub received so far
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of requests the stub failed on purpose so far
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handles the requests to a stub.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * @param method method of the request, e.g. GET
+         * @param path   path of the request
+         * @param query  query of the request, null if there is none
+         * @param body   body of the request, empty if there is none
+         * @return the response
+         */
+        Response handle(String method, String path, String query, String body);
+    }
+
+    /**
+     * Response of a stub.
+     *
+     * @param status status code
+     * @param body   json body, empty if there is none
+     */
+    public record Response(int status, String body) {
+
+        public static Response ok(String body) {
+            return new Response(200, body);
+        }
+
+        public static Response notFound() {
+            return new Response(404, "");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.unistuttgart.t2.uibackend.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.unistuttgart.t2.uibackend.load.StubService.Response;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stands in for all the services the UI backend talks to, i.e. the cart, the inventory, the orchestrator and the
+ * computation simulator.
+ * <p>
+ * The inventory holds a fixed catalog of products and delivers it in pages, like Spring Data REST does. The cart keeps
+ * the carts in memory. The orchestrator and the computation simulator accept every request.
+ * <p>
+ * The latency and error rate of each service are taken from the system properties
+ * {@code t2.loadtest.<service>.latency} (see {@link Latency#parse(String)}) and
+ * {@code t2.loadtest.<service>.error-rate}.
+ */
+public class StubServices implements AutoCloseable {
+
+    public static final String RESERVATION_ENDPOINT = "reservation";
+
+    private static final int PAGE_SIZE = 20;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<String> productIds = new ArrayList<>();
+    private final Map<String, String> carts = new ConcurrentHashMap<>();
+
+    private final StubService inventory;
+    private final StubService cart;
+    private final StubService orchestrator;
+    private final StubService computationSimulator;
+
+    /**
+     * Create and start the stubs.
+     *
+     * @param products number of products in the inventory
+     * @throws IOException if a stub cannot be started
+     */
+    public StubServices(int products) throws IOException {
+        for (int i = 0; i < products; i++) {
+            productIds.add("product-" + i);
+        }
+        inventory = stub("inventory", "5ms,50ms", this::handleInventory);
+        cart = stub("cart", "5ms,50ms", this::handleCart);
+        orchestrator = stub("orchestrator", "20ms,200ms", (method, path, query, body) -> Response.ok(""));
+        computationSimulator = stub("computation-simulator", "50ms,500ms",
+            (method, path, query, body) -> Response.ok("42.0"));
+    }
+
+    private static StubService stub(String name, String defaultLatency, StubService.Handler handler)
+        throws IOException {
+        Latency latency = Latency.parse(System.getProperty("t2.loadtest." + name + ".latency", defaultLatency));
+        double errorRate = Double.parseDouble(System.getProperty("t2.loadtest." + name + ".error-rate", "0"));
+        return new StubService(name, latency, errorRate, handler);
+    }
+
+    private Response handleInventory(String method, String path, String query, String body) {
+        if (path.equals("/inventory/" + RESERVATION_ENDPOINT) && method.equals("POST")) {
+            try {
+                JsonNode request = mapper.readTree(body);
+                String productId = request.path("productId").asText();
+                if (!productIds.contains(productId)) {
+                    return Response.notFound();
+                }
+                ObjectNode product = product(productId);
+                product.put("id", productId);
+                product.put("units", request.path("units").asInt());
+                return Response.ok(product.toString());
+            } catch (IOException e) {
+                return new Response(400, "");
+            }
+        }
+        if (path.equals("/inventory") && method.equals("GET")) {
+            Map<String, String> params = UriComponentsBuilder.newInstance().query(query).build().getQueryParams()
+                .toSingleValueMap();
+            return Response.ok(page(Integer.parseInt(params.getOrDefault("page", "0")),
+                Integer.parseInt(params.getOrDefault("size", String.valueOf(PAGE_SIZE)))));
+        }
+        if (path.startsWith("/inventory/") && method.equals("GET")) {
+            String productId = path.substring("/inventory/".length());
+            return productIds.contains(productId) ? Response.ok(product(productId).toString()) : Response.notFound();
+        }
+        return Response.notFound();
+    }
+
+    private Response handleCart(String method, String path, String query, String body) {
+        String sessionId = path.substring("/cart/".length());
+        switch (method) {
+            case "GET" -> {
+                String content = carts.get(sessionId);
+                return content == null ? Response.notFound() : Response.ok(content);
+            }
+            case "PUT" -> {
+                carts.put(sessionId, body);
+                return Response.ok(body);
+            }
+            case "DELETE" -> {
+                carts.remove(sessionId);
+                return Response.ok("");
+            }
+            default -> {
+                return Response.notFound();
+            }
+        }
+    }
+
+    private ObjectNode product(String productId) {
+        ObjectNode product = mapper.createObjectNode();
+        product.put("name", "name of " + productId);
+        product.put("description", "description of " + productId);
+        product.put("units", 1000);
+        product.put("price", 1.5);
+
+        ObjectNode self = mapper.createObjectNode().put("href", inventory.url("/inventory/" + productId));
+        ObjectNode links = mapper.createObjectNode();
+        links.set("self", self);
+        links.set("inventory", self);
+        product.set("_links", links);
+
+        return product;
+    }
+
+    private String page(int number, int size) {
+        int totalPages = (productIds.size() + size - 1) / size;
+
+        ArrayNode products = mapper.createArrayNode();
+        for (int i = number * size; i < Math.min((number + 1) * size, productIds.size()); i++) {
+            products.add(product(productIds.get(i)));
+        }
+
+        ObjectNode links = mapper.createObjectNode();
+        links.set("self", mapper.createObjectNode().put("href", pageUrl(number, size)));
+        if (number + 1 < totalPages) {
+            links.set("next", mapper.createObjectNode().put("href", pageUrl(number + 1, size)));
+        }
+
+        ObjectNode metadata = mapper.createObjectNode();
+        metadata.put("size", size);
+        metadata.put("totalElements", productIds.size());
+        metadata.put("totalPages", totalPages);
+        metadata.put("number", number);
+
+        ObjectNode page = mapper.createObjectNode();
+        page.set("_embedded", mapper.createObjectNode().set("inventory", products));
+        page.set("_links", links);
+        page.set("page", metadata);
+
+        return page.toString();
+    }
+
+    private String pageUrl(int number, int size) {
+        return inventory.url("/inventory?page=" + number + "&size=" + size);
+    }
+
+    /**
+     * @return ids of all products in the inventory
+     */
+    public List<String> getProductIds() {
+        return productIds;
+    }
+
+    /**
+     * @return the stubs, to configure the UI backend with and to report on
+     */
+    public List<StubService> getStubs() {
+        return List.of(inventory, cart, orchestrator, computationSimulator);
+    }
+
+    public String getInventoryUrl() {
+        return inventory.url("/inventory");
+    }
+
+    public String getCartUrl() {
+        return cart.url("/cart");
+    }
+
+    public String getOrchestratorUrl() {
+        return orchestrator.url("/order");
+    }
+
+    public String getComputationSimulatorUrl() {
+        return computationSimulator.url("/");
+    }
+
+    @Override
+    public void close() {
+        getStubs().forEach(StubService::close);
+    }
+}
@@ -0,0 +1,238 @@
+package de.unistuttgart.t2.uibackend.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jdk.jfr.consumer.RecordingStream;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the throughput and latency of the UI backend's endpoints under a mixed load of browsing, cart and checkout
+ * requests.
+ * <p>
+ * The UI backend runs on a random local port, and the other services are replaced by {@link StubServices} with
+ * realistic latencies. Thus the test runs on a single machine without network. Each simulated user repeatedly
+ * browses the products, puts some of them into a new cart, looks at the cart and, sometimes, confirms the order.
+ * <p>
+ * Only runs if enabled with {@code -Dt2.loadtest=true}, e.g. {@code mvn test -Dt2.loadtest=true
+ * -Dtest=UIBackendLoadTest}. The load is configured with the system properties {@code t2.loadtest.users} (default 50),
+ * {@code t2.loadtest.duration} (default 60s) and {@code t2.loadtest.products} (default 100), the stubs as described
+ * in {@link StubServices}. Settings of the UI backend itself may be passed as system properties too, e.g.
+ * {@code -Dt2.cache.products.enabled=true}.
+ * <p>
+ * The latencies are printed per endpoint, and the full percentile distributions are written as HdrHistogram reports
+ * to {@code target/loadtest}. Note that the users wait for each response before they send the next request, i.e. the
+ * latencies are not corrected for coordinated omission.
+ * <p>
+ * With {@code -Dt2.threads.virtual.enabled=true} on Java 21, the test also records the JFR event
+ * {@code jdk.VirtualThreadPinned}, and fails if any virtual thread was pinned to its carrier for longer than
+ * {@value #PINNED_THRESHOLD_MS}ms, e.g. by blocking I/O inside a {@code synchronized} block.
+ */
+@EnabledIfSystemProperty(named = "t2.loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class UIBackendLoadTest {
+
+    private static final int USERS = Integer.getInteger("t2.loadtest.users", 50);
+    private static final Duration DURATION = DurationStyle
+        .detectAndParse(System.getProperty("t2.loadtest.duration", "60s"));
+    private static final int PRODUCTS = Integer.getInteger("t2.loadtest.products", 100);
+    private static final double CHECKOUT_RATE = 0.3;
+
+    private static final Path REPORTS = Path.of("target", "loadtest");
+
+    private static final long PINNED_THRESHOLD_MS = 20;
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("t2.threads.virtual.enabled");
+
+    private static StubServices stubs;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    private final List<String> pinned = new CopyOnWriteArrayList<>();
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) throws IOException {
+        stubs = new StubServices(PRODUCTS);
+
+        registry.add("t2.inventory.url", stubs::getInventoryUrl);
+        registry.add("t2.inventory.reservationendpoint", () -> StubServices.RESERVATION_ENDPOINT);
+        registry.add("t2.cart.url", stubs::getCartUrl);
+        registry.add("t2.orchestrator.url", stubs::getOrchestratorUrl);
+        registry.add("t2.computation-simulator.enabled", () -> true);
+        registry.add("t2.computation-simulator.url", stubs::getComputationSimulatorUrl);
+        registry.add("opentracing.jaeger.enabled", () -> false);
+        registry.add("opentracing.jaeger.udp-sender.host", () -> "localhost");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        if (stubs != null) {
+            stubs.close();
+        }
+    }
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        for (String operation : List.of("products", "product", "update-cart", "cart", "confirm")) {
+            latencies.put(operation, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+            errors.put(operation, new AtomicLong());
+        }
+
+        // unknown event before Java 21, thus nothing is recorded there
+        RecordingStream pinning = new RecordingStream();
+        pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(PINNED_THRESHOLD_MS))
+            .withStackTrace();
+        pinning.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(event.toString()));
+        pinning.startAsync();
+
+        long end = System.nanoTime() + DURATION.toNanos();
+        ExecutorService users = Executors.newFixedThreadPool(USERS);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                running.add(users.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        visit(ThreadLocalRandom.current());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> user : running) {
+                user.get();
+            }
+        } finally {
+            users.shutdownNow();
+            pinning.close();
+        }
+
+        report();
+        assertTrue(latencies.get("products").getTotalCount() > errors.get("products").get(),
+            "Not a single request for the products succeeded.");
+        if (VIRTUAL_THREADS) {
+            assertEquals(List.of(), pinned, "Virtual threads were pinned to their carriers.");
+        }
+    }
+
+    /**
+     * Visit the store once, with a new session.
+     */
+    private void visit(Random random) throws InterruptedException {
+        String sessionId = UUID.randomUUID().toString();
+        List<String> productIds = stubs.getProductIds();
+
+        send("products", HttpRequest.newBuilder(uri("/products")).GET());
+        for (int i = 0; i < 2; i++) {
+            String productId = productIds.get(random.nextInt(productIds.size()));
+            send("product", HttpRequest.newBuilder(uri("/products/" + productId)).GET());
+        }
+
+        ObjectNode content = mapper.createObjectNode();
+        int products = 1 + random.nextInt(3);
+        for (int i = 0; i < products; i++) {
+            content.put(productIds.get(random.nextInt(productIds.size())), 1 + random.nextInt(3));
+        }
+        send("update-cart", HttpRequest.newBuilder(uri("/cart/" + sessionId))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(mapper.createObjectNode().set("content", content).toString())));
+
+        send("cart", HttpRequest.newBuilder(uri("/cart/" + sessionId)).GET());
+
+        if (random.nextDouble() < CHECKOUT_RATE) {
+            ObjectNode order = mapper.createObjectNode()
+                .put("sessionId", sessionId)
+                .put("cardNumber", "4111111111111111")
+                .put("cardOwner", "load test")
+                .put("checksum", "123");
+            send("confirm", HttpRequest.newBuilder(uri("/confirm"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(order.toString())));
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private void send(String operation, HttpRequest.Builder request) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean failed;
+        try {
+            HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            failed = response.statusCode() >= 400;
+        } catch (IOException e) {
+            failed = true;
+        }
+        latencies.get(operation).recordValue(
+            Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), TimeUnit.MINUTES.toMicros(1)));
+        if (failed) {
+            errors.get(operation).incrementAndGet();
+        }
+    }
+
+    private void report() throws IOException {
+        Files.createDirectories(REPORTS);
+        double seconds = DURATION.toMillis() / 1000.0;
+
+        System.out.printf("%d users for %s against %d products%n", USERS, DURATION, PRODUCTS);
+        System.out.printf("%-12s %8s %8s %8s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "req/s",
+            "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+            Histogram histogram = entry.getValue();
+            System.out.printf("%-12s %8d %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                histogram.getTotalCount(), errors.get(entry.getKey()).get(), histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(REPORTS.resolve(entry.getKey() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+
+        System.out.printf("virtual threads pinned for more than %dms: %d%n", PINNED_THRESHOLD_MS, pinned.size());
+        for (StubService stub : stubs.getStubs()) {
+            System.out.printf("stub %s: %d requests, %d failed on purpose%n", stub.getName(), stub.getRequests(),
+                stub.getErrors());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.unistuttgart.t2.uibackend.retry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link RetryBudget} stops retries once too many requests failed, and allows them again after enough
+ * requests succeeded.
+ */
+public class RetryBudgetTest {
+
+    private final RetryBudget budget = new RetryBudget(10, 0.5);
+
+    @Test
+    public void testBudgetIsExhaustedByFailures() {
+        assertTrue(budget.allowsRetry());
+
+        for (int i = 0; i < 5; i++) {
+            budget.onFailure();
+        }
+
+        assertEquals(5.0, budget.getTokens());
+        assertFalse(budget.allowsRetry());
+    }
+
+    @Test
+    public void testBudgetRecoversBySuccesses() {
+        for (int i = 0; i < 10; i++) {
+            budget.onFailure();
+        }
+        assertEquals(0.0, budget.getTokens());
+
+        for (int i = 0; i < 11; i++) {
+            budget.onSuccess();
+        }
+
+        assertEquals(5.5, budget.getTokens());
+        assertTrue(budget.allowsRetry());
+    }
+
+    @Test
+    public void testTokensAreCapped() {
+        budget.onSuccess();
+        assertEquals(10.0, budget.getTokens());
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(0, 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(10, 1.5));
+    }
+}
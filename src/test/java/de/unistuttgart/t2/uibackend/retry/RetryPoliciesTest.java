@@ -0,0 +1,109 @@
+package de.unistuttgart.t2.uibackend.retry;
+
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test whether the {@link RetryPolicies} retry only what is worth retrying, and stop once the {@link RetryBudget} is
+ * exhausted.
+ */
+public class RetryPoliciesTest {
+
+    private final RetryPolicy policy = new RetryPolicy(3, Duration.ofMillis(1), 2, Duration.ofMillis(10), 0.5,
+        Set.of(502, 503, 504));
+
+    private final RetryBudget budget = new RetryBudget(10, 0.1);
+
+    private final RetryPolicies policies = new RetryPolicies(Map.of(RetryPolicies.CART, policy), budget);
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private Supplier<String> failingWith(RuntimeException e) {
+        return () -> {
+            attempts.incrementAndGet();
+            throw e;
+        };
+    }
+
+    @Test
+    public void testIdempotentRequestsAreRetriedOnRetryableStatus() {
+        Retry retry = policies.idempotent(RetryPolicies.CART);
+
+        assertThrows(HttpServerErrorException.class, () -> Retry
+            .decorateSupplier(retry, failingWith(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))).get());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testIdempotentRequestsAreNotRetriedOnOtherStatus() {
+        Retry retry = policies.idempotent(RetryPolicies.CART);
+
+        assertThrows(HttpClientErrorException.class, () -> Retry
+            .decorateSupplier(retry, failingWith(new HttpClientErrorException(HttpStatus.NOT_FOUND))).get());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testNonIdempotentRequestsAreRetriedOnlyIfUnprocessed() {
+        Retry retry = policies.nonIdempotent(RetryPolicies.CART);
+
+        // the request may have reached the other service
+        assertThrows(ResourceAccessException.class, () -> Retry.decorateSupplier(retry,
+            failingWith(new ResourceAccessException("timeout", new SocketTimeoutException()))).get());
+        assertEquals(1, attempts.get());
+
+        // the request certainly did not reach the other service
+        attempts.set(0);
+        assertThrows(ResourceAccessException.class, () -> Retry.decorateSupplier(retry,
+            failingWith(new ResourceAccessException("refused", new ConnectException()))).get());
+        assertEquals(3, attempts.get());
+
+        attempts.set(0);
+        assertThrows(HttpServerErrorException.class, () -> Retry.decorateSupplier(retry,
+            failingWith(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))).get());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testNoRetriesOnceBudgetIsExhausted() {
+        Retry retry = policies.idempotent(RetryPolicies.CART);
+        for (int i = 0; i < 5; i++) {
+            budget.onFailure();
+        }
+
+        assertThrows(ResourceAccessException.class, () -> Retry.decorateSupplier(retry,
+            failingWith(new ResourceAccessException("io", new IOException()))).get());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testMetricsAreExported() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        policies.bindTo(registry);
+        budget.bindTo(registry);
+
+        assertFalse(registry.find("resilience4j.retry.calls").tag("name", RetryPolicies.CART).meters().isEmpty());
+        assertEquals(10.0, registry.get("t2.retry.budget.tokens").gauge().value());
+    }
+
+    @Test
+    public void testUnknownDownstream() {
+        assertThrows(IllegalArgumentException.class, () -> policies.idempotent(RetryPolicies.ORCHESTRATOR));
+    }
+}
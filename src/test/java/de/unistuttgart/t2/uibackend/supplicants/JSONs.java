@@ -103,4 +103,64 @@ public class JSONs {
 
         return embedded.toString();
     }
+
+    public static String inventoryUrlSecondPage = inventoryUrl + "?page=1&size=1";
+
+    public static String inventoryResponseFirstPage() {
+        ObjectNode base = inventoryBase("name", "description");
+        base.set("_links", makeLinks(inventoryUrl + "/" + productId, "inventory"));
+
+        ObjectNode links = factory.objectNode();
+        links.set("self", factory.objectNode().set("href", factory.textNode(inventoryUrl)));
+        links.set("next", factory.objectNode().set("href", factory.textNode(inventoryUrlSecondPage)));
+
+        ObjectNode page = factory.objectNode().set("_embedded",
+            factory.objectNode().set("inventory", factory.arrayNode().add(base)));
+        page.set("_links", links);
+
+        return page.toString();
+    }
+
+    public static String inventoryResponseSecondPage() {
+        ObjectNode base = inventoryBase("name2", "description2");
+        base.set("_links", makeLinks(inventoryUrl + "/" + anotherproductId, "inventory"));
+
+        ObjectNode page = factory.objectNode().set("_embedded",
+            factory.objectNode().set("inventory", factory.arrayNode().add(base)));
+        page.set("_links", factory.objectNode().set("self",
+            factory.objectNode().set("href", factory.textNode(inventoryUrlSecondPage))));
+
+        return page.toString();
+    }
+
+    public static String inventoryPageUrl(int number, int size) {
+        return inventoryUrl + "?page=" + number + "&size=" + size;
+    }
+
+    /**
+     * Page of a paged inventory with one product per page. The product on page {@code n} has the id {@code "product-n"}.
+     */
+    public static String inventoryResponsePage(int number, int totalPages) {
+        ObjectNode base = inventoryBase("name" + number, "description" + number);
+        base.set("_links", makeLinks(inventoryUrl + "/product-" + number, "inventory"));
+
+        ObjectNode links = factory.objectNode();
+        links.set("self", factory.objectNode().set("href", factory.textNode(inventoryPageUrl(number, 1))));
+        if (number + 1 < totalPages) {
+            links.set("next", factory.objectNode().set("href", factory.textNode(inventoryPageUrl(number + 1, 1))));
+        }
+
+        ObjectNode metadata = factory.objectNode();
+        metadata.set("size", factory.numberNode(1));
+        metadata.set("totalElements", factory.numberNode(totalPages));
+        metadata.set("totalPages", factory.numberNode(totalPages));
+        metadata.set("number", factory.numberNode(number));
+
+        ObjectNode page = factory.objectNode().set("_embedded",
+            factory.objectNode().set("inventory", factory.arrayNode().add(base)));
+        page.set("_links", links);
+        page.set("page", metadata);
+
+        return page.toString();
+    }
 }